@@ -0,0 +1,271 @@
+// ═══════════════════════════════════════════════════════════════════════════════
+// Metadata Index
+// ═══════════════════════════════════════════════════════════════════════════════
+// In-memory index of stored documents, so listing and lookups never scan or
+// stat the uploads directory:
+//
+//   • byName  — Map filename → record (O(1) lookups)
+//   • order   — filenames sorted newest first (binary-searched for cursors)
+//
+// The index is updated on upload, OCR completion and delete, and persisted as
+// a JSON snapshot (written atomically, at most once per second). At startup
+// the snapshot is loaded and reconciled with the directory listing: files
+// missing from the snapshot are stat'ed and added, stale entries dropped.
+// Deleting the snapshot simply forces a full rebuild from disk.
+// ═══════════════════════════════════════════════════════════════════════════════
+
+const fs = require("fs");
+const path = require("path");
+const mime = require("mime-types");
+
+const SNAPSHOT_VERSION = 1;
+const SNAPSHOT_DELAY_MS = 1000;
+
+class MetadataIndex {
+  /**
+   * @param {object} opts
+   * @param {string} opts.originalsDir  Directory holding uploaded originals
+   * @param {string} opts.textDir       Directory holding extracted .txt files
+   * @param {string} opts.snapshotPath  Where the index snapshot is kept
+   * @param {string[]} opts.imageTypes  MIME types reported as images
+   */
+  constructor({ originalsDir, textDir, snapshotPath, imageTypes }) {
+    this.originalsDir = originalsDir;
+    this.textDir = textDir;
+    this.snapshotPath = snapshotPath;
+    this.imageTypes = imageTypes;
+    this.byName = new Map();
+    this.order = [];
+    this.saveTimer = null;
+  }
+
+  // ─── Startup ───
+
+  /** Load the snapshot (if any) and reconcile it with the files on disk. */
+  load() {
+    const started = Date.now();
+    const snapshot = this._readSnapshot();
+    const onDisk = fs.readdirSync(this.originalsDir);
+    const texts = new Set(fs.readdirSync(this.textDir));
+    let added = 0;
+
+    for (const name of onDisk) {
+      let record = snapshot.get(name);
+      if (!record) {
+        try {
+          record = this._describe(name);
+          added++;
+        } catch (err) {
+          if (err.code === "ENOENT") continue;
+          throw err;
+        }
+      }
+      const textFile = path.parse(name).name + ".txt";
+      record.textFile = texts.has(textFile) ? textFile : null;
+      this.byName.set(name, record);
+    }
+
+    this.order = Array.from(this.byName.values()).sort(compareRecords).map((r) => r.filename);
+    const dropped = snapshot.size - (this.byName.size - added);
+    if (added > 0 || dropped > 0) this._scheduleSave();
+
+    console.log(`[Index] ${this.byName.size} documents indexed in ${Date.now() - started}ms ` +
+      `(${added} added from disk, ${dropped} stale dropped)`);
+  }
+
+  // ─── Updates ───
+
+  /** Record a newly stored original. */
+  add(filename) {
+    const record = this._describe(filename);
+    if (this.byName.has(filename)) this._removeFromOrder(this.byName.get(filename));
+    this.byName.set(filename, record);
+    this.order.splice(this._position(record), 0, filename);
+    this._scheduleSave();
+    return record;
+  }
+
+  /** OCR finished and its text was saved as textFile. */
+  setText(filename, textFile) {
+    const record = this.byName.get(filename);
+    if (!record) return;
+    record.textFile = textFile;
+    this._scheduleSave();
+  }
+
+  remove(filename) {
+    const record = this.byName.get(filename);
+    if (!record) return false;
+    this._removeFromOrder(record);
+    this.byName.delete(filename);
+    this._scheduleSave();
+    return true;
+  }
+
+  // ─── Queries ───
+
+  get(filename) {
+    const record = this.byName.get(filename);
+    return record ? toFile(record, this.imageTypes) : null;
+  }
+
+  /**
+   * Page through documents, newest first.
+   *
+   * @param {object} q
+   * @param {number} q.limit      Max results (Infinity for all)
+   * @param {object} q.after      Cursor key { t, n }: start after this entry
+   * @param {function} q.filter   Optional predicate on the listed file
+   * @returns {{ files: object[], nextKey: object|null }}
+   */
+  list({ limit = Infinity, after = null, filter = null } = {}) {
+    let i = after ? this._position(after, true) : 0;
+    const files = [];
+    let last = null;
+
+    for (; i < this.order.length; i++) {
+      const record = this.byName.get(this.order[i]);
+      const file = toFile(record, this.imageTypes);
+      if (filter && !filter(file)) continue;
+      if (files.length === limit) {
+        return { files, nextKey: keyOf(last) };
+      }
+      files.push(file);
+      last = record;
+    }
+    return { files, nextKey: null };
+  }
+
+  get size() {
+    return this.byName.size;
+  }
+
+  // ─── Persistence ───
+
+  /** Write the snapshot now (e.g. on shutdown). */
+  flush() {
+    if (this.saveTimer) {
+      clearTimeout(this.saveTimer);
+      this.saveTimer = null;
+    }
+    const tmp = this.snapshotPath + ".tmp";
+    const body = JSON.stringify({
+      version: SNAPSHOT_VERSION,
+      savedAt: new Date().toISOString(),
+      documents: this.order.map((name) => this.byName.get(name)),
+    });
+    fs.writeFileSync(tmp, body, "utf-8");
+    fs.renameSync(tmp, this.snapshotPath);
+  }
+
+  _scheduleSave() {
+    if (this.saveTimer) return;
+    this.saveTimer = setTimeout(() => {
+      this.saveTimer = null;
+      try {
+        this.flush();
+      } catch (err) {
+        console.error(`[Index] Snapshot write failed: ${err.message}`);
+      }
+    }, SNAPSHOT_DELAY_MS);
+    this.saveTimer.unref();
+  }
+
+  _readSnapshot() {
+    const records = new Map();
+    try {
+      const data = JSON.parse(fs.readFileSync(this.snapshotPath, "utf-8"));
+      if (data.version === SNAPSHOT_VERSION && Array.isArray(data.documents)) {
+        for (const r of data.documents) records.set(r.filename, r);
+      }
+    } catch (err) {
+      if (err.code !== "ENOENT") {
+        console.warn(`[Index] Ignoring unreadable snapshot, rebuilding from disk: ${err.message}`);
+      }
+    }
+    return records;
+  }
+
+  // ─── Internal Helpers ───
+
+  _describe(filename) {
+    const stats = fs.statSync(path.join(this.originalsDir, filename));
+    const match = /^(\d+)-/.exec(filename);
+    const textFile = path.parse(filename).name + ".txt";
+    return {
+      filename,
+      t: match ? parseInt(match[1], 10) : stats.mtimeMs,
+      size: stats.size,
+      mimeType: mime.lookup(filename) || "application/octet-stream",
+      uploadedAt: stats.mtime.toISOString(),
+      textFile: fs.existsSync(path.join(this.textDir, textFile)) ? textFile : null,
+    };
+  }
+
+  /**
+   * Index in order of the first entry sorting after key (strictAfter) or
+   * at/after key (insertion point).
+   */
+  _position(key, strictAfter = false) {
+    const k = keyOf(key);
+    let lo = 0;
+    let hi = this.order.length;
+    while (lo < hi) {
+      const mid = (lo + hi) >>> 1;
+      const cmp = compareKeys(keyOf(this.byName.get(this.order[mid])), k);
+      if (cmp < 0 || (strictAfter && cmp === 0)) lo = mid + 1;
+      else hi = mid;
+    }
+    return lo;
+  }
+
+  _removeFromOrder(record) {
+    const i = this._position(record);
+    if (this.order[i] === record.filename) this.order.splice(i, 1);
+  }
+}
+
+// ─── Ordering & Cursors ───
+// Newest first; equal timestamps ordered by name. A cursor is the key of the
+// last entry on a page, base64url-encoded.
+
+function keyOf(recordOrKey) {
+  return { t: recordOrKey.t, n: recordOrKey.n !== undefined ? recordOrKey.n : recordOrKey.filename };
+}
+
+function compareKeys(a, b) {
+  if (a.t !== b.t) return b.t - a.t;
+  return a.n < b.n ? -1 : a.n > b.n ? 1 : 0;
+}
+
+function compareRecords(a, b) {
+  return compareKeys(keyOf(a), keyOf(b));
+}
+
+function encodeCursor(key) {
+  return Buffer.from(JSON.stringify(key)).toString("base64url");
+}
+
+function decodeCursor(cursor) {
+  try {
+    const key = JSON.parse(Buffer.from(cursor, "base64url").toString("utf-8"));
+    if (typeof key.t === "number" && typeof key.n === "string") return key;
+  } catch (err) {
+    // fall through
+  }
+  return null;
+}
+
+function toFile(record, imageTypes) {
+  return {
+    filename: record.filename,
+    size: record.size,
+    mimeType: record.mimeType,
+    isImage: imageTypes.includes(record.mimeType),
+    uploadedAt: record.uploadedAt,
+    hasExtractedText: record.textFile !== null,
+    textFile: record.textFile,
+  };
+}
+
+module.exports = { MetadataIndex, encodeCursor, decodeCursor };
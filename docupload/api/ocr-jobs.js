@@ -0,0 +1,190 @@
+// ═══════════════════════════════════════════════════════════════════════════════
+// OCR Jobs
+// ═══════════════════════════════════════════════════════════════════════════════
+// Background OCR for uploads made in async mode. The upload request returns
+// as soon as the file is stored; the OCR call runs here, at most
+// `concurrency` at a time, and its progress is tracked as a job:
+//
+//   queued → processing → done | failed        (skipped: no OCR for this type)
+//
+// A job's id is the document id (stored filename). Callers can long-poll a
+// job with waitForCompletion(), which resolves as soon as the job finishes
+// or the wait expires — no busy polling. Finished jobs are kept for
+// `retentionMs` and then forgotten; the metadata index still knows whether
+// the document has extracted text.
+//
+// When the OCR service is at capacity, process() throws an error carrying
+// retryAfterMs. The job goes back to the head of the queue and the whole
+// queue pauses for that long, instead of piling more work onto a full
+// service; after `busyRetries` such attempts the job fails.
+// ═══════════════════════════════════════════════════════════════════════════════
+
+const TERMINAL = new Set(["done", "failed", "skipped"]);
+
+class OcrJobQueue {
+  /**
+   * @param {object} opts
+   * @param {function} opts.process      async (job) => { textFile, characterCount }
+   * @param {number}   opts.concurrency  OCR calls run at the same time
+   * @param {number}   opts.retentionMs  How long finished jobs are kept
+   * @param {number}   opts.busyRetries  Times a job is re-queued while OCR is at capacity
+   */
+  constructor({ process, concurrency, retentionMs, busyRetries = 20 }) {
+    this.process = process;
+    this.concurrency = concurrency;
+    this.retentionMs = retentionMs;
+    this.busyRetries = busyRetries;
+    this.jobs = new Map();
+    this.pending = [];
+    this.active = 0;
+    this.pausedUntil = 0;
+    this.resumeTimer = null;
+
+    const pruner = setInterval(() => this._prune(), Math.min(retentionMs, 60000));
+    pruner.unref();
+  }
+
+  // ─── Submitting ───
+
+  /** Queue OCR for a stored file. file: { filename, path, mimeType } */
+  submit(file) {
+    const job = this._create(file.filename, "queued");
+    job.file = file;
+    this.pending.push(job);
+    this._pump();
+    return job;
+  }
+
+  /** Record a job that needs no OCR (the file type is not OCR'd). */
+  skip(filename) {
+    const job = this._create(filename, "skipped");
+    job.finishedAt = job.createdAt;
+    return job;
+  }
+
+  // ─── Querying ───
+
+  get(id) {
+    return this.jobs.get(id) || null;
+  }
+
+  /**
+   * Resolve with the job once it is finished, or after waitMs (whichever
+   * comes first). Resolves with null if the job is unknown.
+   */
+  waitForCompletion(id, waitMs) {
+    const job = this.jobs.get(id);
+    if (!job || TERMINAL.has(job.status) || waitMs <= 0) return Promise.resolve(job || null);
+
+    return new Promise((resolve) => {
+      const done = () => {
+        clearTimeout(timer);
+        job.waiters.delete(done);
+        resolve(job);
+      };
+      const timer = setTimeout(done, waitMs);
+      job.waiters.add(done);
+    });
+  }
+
+  stats() {
+    return {
+      queued: this.pending.length,
+      processing: this.active,
+      tracked: this.jobs.size,
+      pausedForMs: Math.max(0, this.pausedUntil - Date.now()),
+    };
+  }
+
+  // ─── Internal Helpers ───
+
+  _create(id, status) {
+    const job = {
+      id,
+      status,
+      createdAt: new Date().toISOString(),
+      startedAt: null,
+      finishedAt: null,
+      textFile: null,
+      characterCount: 0,
+      error: null,
+      busyAttempts: 0,
+      waiters: new Set(),
+    };
+    this.jobs.set(id, job);
+    return job;
+  }
+
+  _pump() {
+    if (Date.now() < this.pausedUntil) return;
+    while (this.active < this.concurrency && this.pending.length > 0) {
+      const job = this.pending.shift();
+      this.active++;
+      this._run(job).finally(() => {
+        this.active--;
+        this._pump();
+      });
+    }
+  }
+
+  async _run(job) {
+    job.status = "processing";
+    job.startedAt = new Date().toISOString();
+    try {
+      const result = await this.process(job);
+      job.textFile = result.textFile;
+      job.characterCount = result.characterCount;
+      job.status = "done";
+    } catch (err) {
+      if (err.retryAfterMs !== undefined && job.busyAttempts < this.busyRetries) {
+        job.busyAttempts++;
+        job.status = "queued";
+        job.startedAt = null;
+        this.pending.unshift(job);
+        this._pause(err.retryAfterMs);
+        return;
+      }
+      job.error = err.message;
+      job.status = "failed";
+    }
+    job.finishedAt = new Date().toISOString();
+    job.file = null;
+    for (const wake of Array.from(job.waiters)) wake();
+  }
+
+  _pause(ms) {
+    this.pausedUntil = Math.max(this.pausedUntil, Date.now() + ms);
+    clearTimeout(this.resumeTimer);
+    // Timers may fire a little early by Date.now(), so the timer ends the pause
+    this.resumeTimer = setTimeout(() => {
+      this.pausedUntil = 0;
+      this._pump();
+    }, this.pausedUntil - Date.now());
+    this.resumeTimer.unref();
+  }
+
+  _prune() {
+    const cutoff = Date.now() - this.retentionMs;
+    for (const [id, job] of this.jobs) {
+      if (TERMINAL.has(job.status) && Date.parse(job.finishedAt) < cutoff && job.waiters.size === 0) {
+        this.jobs.delete(id);
+      }
+    }
+  }
+}
+
+/** Public view of a job (no internal fields). */
+function jobView(job) {
+  return {
+    id: job.id,
+    status: job.status,
+    createdAt: job.createdAt,
+    startedAt: job.startedAt,
+    finishedAt: job.finishedAt,
+    textFile: job.textFile,
+    characterCount: job.characterCount,
+    error: job.error,
+  };
+}
+
+module.exports = { OcrJobQueue, jobView, TERMINAL };
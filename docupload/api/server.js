@@ -6,11 +6,19 @@ const path = require("path");
 const fs = require("fs");
 const fetch = require("node-fetch");
 const FormData = require("form-data");
+const { MetadataIndex, encodeCursor, decodeCursor } = require("./metadata-index");
+const { OcrJobQueue, jobView } = require("./ocr-jobs");
 
 const app = express();
 const PORT = 3000;
 const UPLOAD_DIR = process.env.UPLOAD_DIR || "./uploads";
 const OCR_SERVICE_URL = process.env.OCR_SERVICE_URL || "http://ocr:5000";
+// Long PDFs are OCR'd page by page with per-page budgets in the OCR service;
+// this only bounds the whole request.
+const OCR_TIMEOUT_MS = parseInt(process.env.OCR_TIMEOUT_MS) || 600000;
+// "shared": the OCR service mounts the uploads volume read-only and is sent
+// only the stored filename; "upload" (default) posts the file's bytes.
+const OCR_HANDOFF = process.env.OCR_HANDOFF === "shared" ? "shared" : "upload";
 
 // Ensure upload directories exist
 const originalsDir = path.join(UPLOAD_DIR, "originals");
@@ -33,7 +41,7 @@ const storage = multer.diskStorage({
 
 const upload = multer({
   storage,
-  limits: { fileSize: 50 * 1024 * 1024 }, // 50MB
+  limits: { fileSize: (parseInt(process.env.MAX_UPLOAD_MB) || 50) * 1024 * 1024 },
 });
 
 // ─── Image MIME types that trigger OCR ───
@@ -50,14 +58,145 @@ const IMAGE_TYPES = [
 // ─── PDF also gets OCR ───
 const OCR_TYPES = [...IMAGE_TYPES, "application/pdf"];
 
+// ─── Metadata index (see metadata-index.js) ───
+const index = new MetadataIndex({
+  originalsDir,
+  textDir,
+  snapshotPath: process.env.METADATA_INDEX_PATH || path.join(UPLOAD_DIR, "index.json"),
+  imageTypes: IMAGE_TYPES,
+});
+index.load();
+
+// ─── Server-Timing ───
+// Upload stage timings accumulate along the request path: the OCR service's
+// Server-Timing metrics come first, then the api's own (api-*), then the
+// gateway's (gw-*). Durations are in milliseconds.
+function timingMetric(name, ms, desc) {
+  return `${name};dur=${ms.toFixed(1)}` + (desc ? `;desc="${desc}"` : "");
+}
+
+function msSince(start) {
+  return Number(process.hrtime.bigint() - start) / 1e6;
+}
+
+// ─── OCR call ───
+// Sends a stored file to the OCR service and saves the extracted text next
+// to the other text files. Throws with a readable message on failure; when
+// the OCR service is at capacity (503) the error carries retryAfterMs.
+// Also returns the OCR service's Server-Timing and the api's own timings
+// (OCR round trip, text write).
+async function runOcr(filename, filePath, mimeType) {
+  const ocrStart = process.hrtime.bigint();
+  console.log(`[OCR] Sending ${filename} to OCR service (${OCR_HANDOFF})...`);
+  let ocrResponse = await postToOcr(filename, filePath, mimeType, OCR_HANDOFF === "shared");
+
+  // The OCR service has no shared volume or cannot see the file: send the bytes
+  if (OCR_HANDOFF === "shared" && (ocrResponse.status === 400 || ocrResponse.status === 404)) {
+    const errText = await ocrResponse.text();
+    console.warn(`[OCR] Shared handoff refused (${ocrResponse.status}: ${errText}), uploading instead`);
+    ocrResponse = await postToOcr(filename, filePath, mimeType, false);
+  }
+
+  if (ocrResponse.status === 503) {
+    const retryAfterS = parseInt(ocrResponse.headers.get("retry-after")) || 1;
+    console.warn(`[OCR] Service at capacity, retry after ${retryAfterS}s`);
+    const err = new Error("OCR service is at capacity");
+    err.retryAfterMs = retryAfterS * 1000;
+    throw err;
+  }
+
+  if (!ocrResponse.ok) {
+    const errText = await ocrResponse.text();
+    console.error(`[OCR] Service error: ${errText}`);
+    throw new Error("OCR service returned an error");
+  }
+
+  const ocrData = await ocrResponse.json();
+  const ocrMs = msSince(ocrStart);
+  const writeStart = process.hrtime.bigint();
+  const textFile = path.parse(filename).name + ".txt";
+  fs.writeFileSync(path.join(textDir, textFile), ocrData.text, "utf-8");
+  index.setText(filename, textFile);
+  console.log(`[OCR] Text extracted and saved: ${textFile}`);
+  return {
+    text: ocrData.text,
+    textFile,
+    serverTiming: ocrResponse.headers.get("server-timing"),
+    timings: [timingMetric("api-ocr", ocrMs, "OCR round trip"), timingMetric("api-textwrite", msSince(writeStart))],
+  };
+}
+
+async function postToOcr(filename, filePath, mimeType, shared) {
+  let body;
+  let headers;
+  if (shared) {
+    body = new URLSearchParams({ document: filename });
+    headers = { "Content-Type": "application/x-www-form-urlencoded" };
+  } else {
+    body = new FormData();
+    body.append("file", fs.createReadStream(filePath), {
+      filename,
+      contentType: mimeType,
+    });
+    headers = body.getHeaders();
+  }
+
+  try {
+    return await fetch(`${OCR_SERVICE_URL}/ocr`, {
+      method: "POST",
+      body,
+      headers,
+      timeout: OCR_TIMEOUT_MS,
+    });
+  } catch (err) {
+    console.error(`[OCR] Connection error: ${err.message}`);
+    throw new Error(`OCR service unavailable: ${err.message}`);
+  }
+}
+
+// ─── Background OCR jobs (see ocr-jobs.js) ───
+const jobs = new OcrJobQueue({
+  concurrency: parseInt(process.env.OCR_JOB_CONCURRENCY) || 2,
+  retentionMs: (parseInt(process.env.OCR_JOB_RETENTION_S) || 3600) * 1000,
+  busyRetries: parseInt(process.env.OCR_JOB_BUSY_RETRIES) || 20,
+  process: async (job) => {
+    const { text, textFile } = await runOcr(job.file.filename, job.file.path, job.file.mimeType);
+    return { textFile, characterCount: text ? text.length : 0 };
+  },
+});
+
+// Async mode: ?async=true or "Prefer: respond-async"
+function wantsAsync(req) {
+  return req.query.async === "true" || /\brespond-async\b/.test(req.headers.prefer || "");
+}
+
 // ─── Upload endpoint ───
-app.post("/api/upload", upload.single("document"), async (req, res) => {
+// Sync (default): OCR runs before the response, which carries the text. If
+// the OCR service is at capacity the upload is undone and answered with 503
+// + Retry-After, so the client can simply send it again later.
+// Async: responds 202 once the file is stored; OCR runs as a background job
+// reported at GET /api/jobs/:id.
+// Both carry a Server-Timing header: api-receive (parsing the form and
+// writing the file), the OCR stages when OCR ran inline, and api-total.
+function startTimer(req, res, next) {
+  req.startedAt = process.hrtime.bigint();
+  next();
+}
+
+function setServerTiming(req, res, upstream, timings) {
+  const total = timingMetric("api-total", msSince(req.startedAt));
+  res.setHeader("Server-Timing", [upstream, ...timings, total].filter(Boolean).join(", "));
+}
+
+app.post("/api/upload", startTimer, upload.single("document"), async (req, res) => {
   try {
     if (!req.file) {
       return res.status(400).json({ error: "No file uploaded" });
     }
+    const timings = [timingMetric("api-receive", msSince(req.startedAt))];
 
     const file = req.file;
+    index.add(file.filename);
     const detectedMime = mime.lookup(file.originalname) || file.mimetype;
     const isOcrType = OCR_TYPES.includes(detectedMime);
 
@@ -73,46 +212,37 @@ app.post("/api/upload", upload.single("document"), async (req, res) => {
       storedPath: file.path,
     };
 
+    if (wantsAsync(req)) {
+      const job = isOcrType
+        ? jobs.submit({ filename: file.filename, path: file.path, mimeType: detectedMime })
+        : jobs.skip(file.filename);
+      setServerTiming(req, res, null, timings);
+      return res.status(202).json({ success: true, file: result, job: jobView(job) });
+    }
+
     // If image or PDF, call OCR service
+    let ocrServerTiming = null;
     if (isOcrType) {
       try {
-        console.log(`[OCR] Sending ${file.filename} to OCR service...`);
-        const form = new FormData();
-        form.append("file", fs.createReadStream(file.path), {
-          filename: file.filename,
-          contentType: detectedMime,
-        });
-
-        const ocrResponse = await fetch(`${OCR_SERVICE_URL}/ocr`, {
-          method: "POST",
-          body: form,
-          headers: form.getHeaders(),
-          timeout: 120000,
-        });
-
-        if (ocrResponse.ok) {
-          const ocrData = await ocrResponse.json();
-          result.ocrApplied = true;
-          result.extractedText = ocrData.text;
-
-          // Save extracted text
-          const textFilename = path.parse(file.filename).name + ".txt";
-          const textPath = path.join(textDir, textFilename);
-          fs.writeFileSync(textPath, ocrData.text, "utf-8");
-          result.textFile = textFilename;
-
-          console.log(`[OCR] Text extracted and saved: ${textFilename}`);
-        } else {
-          const errText = await ocrResponse.text();
-          console.error(`[OCR] Service error: ${errText}`);
-          result.ocrError = "OCR service returned an error";
-        }
+        const ocr = await runOcr(file.filename, file.path, detectedMime);
+        result.ocrApplied = true;
+        result.extractedText = ocr.text;
+        result.textFile = ocr.textFile;
+        ocrServerTiming = ocr.serverTiming;
+        timings.push(...ocr.timings);
       } catch (ocrErr) {
-        console.error(`[OCR] Connection error: ${ocrErr.message}`);
-        result.ocrError = `OCR service unavailable: ${ocrErr.message}`;
+        if (ocrErr.retryAfterMs !== undefined) {
+          index.remove(file.filename);
+          fs.unlink(file.path, () => {});
+          const retryAfterS = Math.ceil(ocrErr.retryAfterMs / 1000);
+          res.setHeader("Retry-After", String(retryAfterS));
+          return res.status(503).json({ error: ocrErr.message, overloaded: true, retryAfter: retryAfterS });
+        }
+        result.ocrError = ocrErr.message;
       }
     }
 
+    setServerTiming(req, res, ocrServerTiming, timings);
     res.json({ success: true, file: result });
   } catch (err) {
     console.error("[Upload] Error:", err);
@@ -120,36 +250,97 @@ app.post("/api/upload", upload.single("document"), async (req, res) => {
   }
 });
 
-// ─── List all files ───
+// ─── OCR job status ───
+// GET /api/jobs/:id?wait=S long-polls: the response is held until the job
+// finishes or S seconds pass (max 30). Jobs no longer tracked (finished long
+// ago, or from before a restart) are answered from the metadata index.
+const MAX_JOB_WAIT_S = 30;
+
+app.get("/api/jobs/:id", async (req, res) => {
+  const waitS = Math.min(Math.max(parseFloat(req.query.wait) || 0, 0), MAX_JOB_WAIT_S);
+  const job = await jobs.waitForCompletion(req.params.id, waitS * 1000);
+  if (job) return res.json({ job: jobView(job) });
+
+  const file = index.get(req.params.id);
+  if (!file) return res.status(404).json({ error: "Job not found" });
+
+  const ocrType = OCR_TYPES.includes(file.mimeType);
+  res.json({
+    job: {
+      id: file.filename,
+      status: file.hasExtractedText ? "done" : ocrType ? "failed" : "skipped",
+      createdAt: file.uploadedAt,
+      startedAt: null,
+      finishedAt: null,
+      textFile: file.textFile,
+      characterCount: null,
+      error: !file.hasExtractedText && ocrType ? "No extracted text for this document" : null,
+    },
+  });
+});
+
+// ─── List files (cursor-paginated) ───
+// GET /api/files?limit=N&cursor=C returns up to N files, newest first, plus
+// nextCursor for the following page (null on the last page). Without limit
+// every file is returned, as before. Optional filters: mimeType=, isImage=,
+// hasText= (true|false). Served from the metadata index; no directory scan.
+const MAX_PAGE_SIZE = 1000;
+
+function parseBool(value) {
+  if (value === undefined) return undefined;
+  if (value === "true") return true;
+  if (value === "false") return false;
+  return null;
+}
+
 app.get("/api/files", (req, res) => {
+  let limit = Infinity;
+  if (req.query.limit !== undefined) {
+    limit = parseInt(req.query.limit, 10);
+    if (!(limit > 0)) {
+      return res.status(400).json({ error: "limit must be a positive integer" });
+    }
+    limit = Math.min(limit, MAX_PAGE_SIZE);
+  }
+  let after = null;
+  if (req.query.cursor) {
+    after = decodeCursor(req.query.cursor);
+    if (!after) return res.status(400).json({ error: "Invalid cursor" });
+  }
+  const { mimeType } = req.query;
+  const isImage = parseBool(req.query.isImage);
+  const hasText = parseBool(req.query.hasText);
+  if (isImage === null || hasText === null) {
+    return res.status(400).json({ error: "isImage and hasText must be true or false" });
+  }
+
+  const filter = mimeType !== undefined || isImage !== undefined || hasText !== undefined
+    ? (f) => (mimeType === undefined || f.mimeType === mimeType)
+        && (isImage === undefined || f.isImage === isImage)
+        && (hasText === undefined || f.hasExtractedText === hasText)
+    : null;
+
   try {
-    const originals = fs.readdirSync(originalsDir).map((name) => {
-      const filePath = path.join(originalsDir, name);
-      const stats = fs.statSync(filePath);
-      const detectedMime = mime.lookup(name) || "application/octet-stream";
-      const baseName = path.parse(name).name;
-      const hasText = fs.existsSync(path.join(textDir, baseName + ".txt"));
-
-      return {
-        filename: name,
-        size: stats.size,
-        mimeType: detectedMime,
-        isImage: IMAGE_TYPES.includes(detectedMime),
-        uploadedAt: stats.mtime.toISOString(),
-        hasExtractedText: hasText,
-        textFile: hasText ? baseName + ".txt" : null,
-      };
+    const { files, nextKey } = index.list({ limit, after, filter });
+    res.json({
+      files,
+      nextCursor: nextKey ? encodeCursor(nextKey) : null,
     });
-
-    // Sort newest first
-    originals.sort((a, b) => new Date(b.uploadedAt) - new Date(a.uploadedAt));
-    res.json({ files: originals });
   } catch (err) {
     console.error("[List] Error:", err);
     res.status(500).json({ error: "Failed to list files" });
   }
 });
 
+// ─── Single file metadata ───
+app.get("/api/files/meta/:filename", (req, res) => {
+  const file = index.get(req.params.filename);
+  if (!file) {
+    return res.status(404).json({ error: "File not found" });
+  }
+  res.json({ file });
+});
+
 // ─── Download original file ───
 app.get("/api/files/download/:filename", (req, res) => {
   const filePath = path.join(originalsDir, req.params.filename);
@@ -187,6 +378,7 @@ app.delete("/api/files/:filename", (req, res) => {
 
     if (fs.existsSync(origPath)) fs.unlinkSync(origPath);
     if (fs.existsSync(txtPath)) fs.unlinkSync(txtPath);
+    index.remove(req.params.filename);
 
     res.json({ success: true });
   } catch (err) {
@@ -195,12 +387,63 @@ app.delete("/api/files/:filename", (req, res) => {
 });
 
 // ─── Health check ───
-app.get("/api/health", (req, res) => {
-  res.json({ status: "ok", timestamp: new Date().toISOString() });
+// Also reports whether the OCR service is reachable, so the gateway and
+// clients can tell "api up, OCR down" apart. The OCR probe is cached briefly
+// so frequent health polls don't add load to the OCR service.
+const OCR_HEALTH_TTL_MS = 5000;
+let ocrHealthCache = { checkedAt: 0, status: "unknown" };
+
+async function checkOcrHealth() {
+  const now = Date.now();
+  if (now - ocrHealthCache.checkedAt < OCR_HEALTH_TTL_MS) return ocrHealthCache.status;
+
+  let status;
+  try {
+    const ocrRes = await fetch(`${OCR_SERVICE_URL}/health`, { timeout: 2000 });
+    status = ocrRes.ok ? "ok" : "unhealthy";
+  } catch (err) {
+    status = "unreachable";
+  }
+  ocrHealthCache = { checkedAt: now, status };
+  return status;
+}
+
+app.get("/api/health", async (req, res) => {
+  const ocrStatus = await checkOcrHealth();
+  res.json({
+    status: ocrStatus === "ok" ? "ok" : "degraded",
+    ocr: { status: ocrStatus },
+    jobs: jobs.stats(),
+    timestamp: new Date().toISOString(),
+  });
 });
 
+// ─── Upload errors ───
+// multer rejects oversized or malformed uploads (and removes any partial
+// file); report them as client errors rather than a 500.
+app.use((err, req, res, next) => {
+  if (err instanceof multer.MulterError) {
+    const status = err.code === "LIMIT_FILE_SIZE" ? 413 : 400;
+    return res.status(status).json({ error: err.message });
+  }
+  next(err);
+});
+
+// ─── Shutdown: persist the index snapshot ───
+for (const signal of ["SIGTERM", "SIGINT"]) {
+  process.on(signal, () => {
+    try {
+      index.flush();
+    } catch (err) {
+      console.error(`[Index] Snapshot write failed: ${err.message}`);
+    }
+    process.exit(0);
+  });
+}
+
 app.listen(PORT, () => {
   console.log(`[API] Document Upload API running on port ${PORT}`);
   console.log(`[API] OCR Service URL: ${OCR_SERVICE_URL}`);
   console.log(`[API] Upload directory: ${UPLOAD_DIR}`);
+  console.log(`[API] Documents indexed: ${index.size}`);
 });
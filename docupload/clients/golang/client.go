@@ -61,7 +61,8 @@ func NewClient(baseURL, apiKey string) *Client {
 		BaseURL: strings.TrimRight(baseURL, "/"),
 		APIKey:  apiKey,
 		HTTPClient: &http.Client{
-			Timeout: 120 * time.Second,
+			// Outlasts the gateway's synchronous upload timeout (UPLOAD_TIMEOUT_MS)
+			Timeout: 660 * time.Second,
 		},
 	}
 }
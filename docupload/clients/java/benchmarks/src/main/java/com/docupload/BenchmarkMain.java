@@ -0,0 +1,43 @@
+package com.docupload;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ═══════════════════════════════════════════════════════════════════════════
+ * DocScan Client Benchmarks
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Entry point of target/benchmarks.jar. Takes the usual JMH options and
+ * always adds the GC profiler, so every result comes with allocation rate
+ * and bytes allocated per operation (gc.alloc.rate.norm).
+ *
+ * Usage:
+ *   java -jar target/benchmarks.jar                       # everything
+ *   java -jar target/benchmarks.jar ListDecode            # one class
+ *   java -jar target/benchmarks.jar Multipart -p fileSize=52428800
+ *   java -jar target/benchmarks.jar -rf json -rff results.json
+ * ═══════════════════════════════════════════════════════════════════════════
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams()
+                || cli.shouldListProfilers() || cli.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(cli);
+        boolean gcRequested = cli.getProfilers().stream()
+            .anyMatch(p -> p.getKlass().equals("gc") || p.getKlass().equals(GCProfiler.class.getName()));
+        if (!gcRequested) options.addProfiler(GCProfiler.class);
+        new Runner(options.build()).run();
+    }
+}
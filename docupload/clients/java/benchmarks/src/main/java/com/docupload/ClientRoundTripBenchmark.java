@@ -0,0 +1,87 @@
+package com.docupload;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import com.docupload.DocScanClient.DocumentList;
+import com.docupload.DocScanClient.UploadResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole client calls against {@link StubServer} on loopback, on both
+ * transports: request building (request id, multipart), the body upload,
+ * and response decoding. Uploads go from a 1 KB receipt to a 50 MB PDF;
+ * the list call returns 100 documents.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientRoundTripBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Client {
+        @Param({"httpclient", "urlconnection"})
+        public String transport;
+
+        StubServer server;
+        DocScanClient client;
+
+        @Setup
+        public void setUp() throws IOException {
+            server = new StubServer(Fixtures.uploadResponse(1024), Fixtures.listResponse(100));
+            DocScanTransport t = "httpclient".equals(transport)
+                ? new HttpClientTransport(5000)
+                : new UrlConnectionTransport(5000);
+            client = new DocScanClient(server.baseUrl(), "bench-key", 60_000, t);
+        }
+
+        @TearDown
+        public void tearDown() {
+            server.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Upload {
+        @Param({"1024", "1048576", "52428800"})
+        public long fileSize;
+
+        String file;
+
+        @Setup
+        public void setUp() throws IOException {
+            file = Fixtures.tempFile(fileSize).toString();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(Path.of(file));
+        }
+    }
+
+    @Benchmark
+    public UploadResult uploadDocument(Client c, Upload u) throws IOException {
+        return c.client.uploadDocument(u.file);
+    }
+
+    @Benchmark
+    public DocumentList listDocuments(Client c) throws IOException {
+        return c.client.listDocuments();
+    }
+}
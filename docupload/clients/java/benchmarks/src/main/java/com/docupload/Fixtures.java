@@ -0,0 +1,79 @@
+package com.docupload;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Test data shared by the benchmarks: upload files of a given size and
+ * gateway responses shaped like the real ones (see gateway/openapi.yaml).
+ * Everything is generated from a fixed seed, so runs are comparable.
+ */
+final class Fixtures {
+
+    private static final int CHUNK = 1024 * 1024;
+
+    private Fixtures() {}
+
+    /** A temp file of exactly `size` pseudo-random bytes. */
+    static Path tempFile(long size) throws IOException {
+        Path file = Files.createTempFile("docscan-bench-", ".pdf");
+        byte[] chunk = new byte[CHUNK];
+        new Random(42).nextBytes(chunk);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long left = size; left > 0; left -= CHUNK) {
+                out.write(chunk, 0, (int) Math.min(CHUNK, left));
+            }
+        }
+        return file;
+    }
+
+    /** POST /v1/documents response carrying `textChars` of extracted text. */
+    static byte[] uploadResponse(int textChars) {
+        String text = extractedText(textChars);
+        return ("{\"document\":{"
+            + "\"id\":\"1718000000000-receipt.pdf\",\"originalName\":\"receipt.pdf\","
+            + "\"mimeType\":\"application/pdf\",\"sizeBytes\":" + textChars + ","
+            + "\"classification\":{\"isImage\":false,\"isPdf\":true,\"category\":\"pdf\"},"
+            + "\"ocr\":{\"applied\":true,\"extractedText\":\"" + text + "\","
+            + "\"textFileId\":\"1718000000000-receipt.txt\",\"characterCount\":" + textChars + ",\"error\":null},"
+            + "\"links\":{\"downloadOriginal\":\"/v1/documents/1718000000000-receipt.pdf/download\","
+            + "\"downloadText\":\"/v1/documents/1718000000000-receipt.pdf/text\","
+            + "\"delete\":\"/v1/documents/1718000000000-receipt.pdf\"}},"
+            + "\"requestId\":\"3f1c2a9e-8d4b-4f7a-9c3e-2b1d0e6f5a47\"}")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** GET /v1/documents response listing `count` documents. */
+    static byte[] listResponse(int count) {
+        StringBuilder sb = new StringBuilder(count * 420 + 128);
+        sb.append("{\"documents\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            String id = (1718000000000L - i) + "-scan-" + i + ".png";
+            sb.append("{\"id\":\"").append(id).append("\",")
+                .append("\"mimeType\":\"image/png\",\"sizeBytes\":").append(100_000 + i).append(',')
+                .append("\"isImage\":true,\"uploadedAt\":\"2024-06-10T06:13:20.000Z\",")
+                .append("\"ocr\":{\"hasExtractedText\":").append(i % 3 != 0).append(',')
+                .append("\"textFileId\":").append(i % 3 != 0 ? "\"" + id + ".txt\"" : "null").append("},")
+                .append("\"links\":{\"self\":\"/v1/documents/").append(id).append("\",")
+                .append("\"download\":\"/v1/documents/").append(id).append("/download\"}}");
+        }
+        sb.append("],\"count\":").append(count)
+            .append(",\"nextCursor\":null,\"requestId\":\"3f1c2a9e-8d4b-4f7a-9c3e-2b1d0e6f5a47\"}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** OCR-like text, JSON-escaped: short lines of words separated by \n. */
+    private static String extractedText(int chars) {
+        String line = "TOTAL DUE 42.17 EUR  Invoice 2024-0613  Thank you for your purchase\\n";
+        StringBuilder sb = new StringBuilder(chars + line.length());
+        while (sb.length() < chars) sb.append(line);
+        sb.setLength(chars);
+        if (sb.charAt(chars - 1) == '\\') sb.setCharAt(chars - 1, ' ');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package com.docupload;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import com.docupload.DocScanClient.DocumentInfo;
+import com.docupload.DocScanClient.DocumentList;
+import com.docupload.DocScanTransport.Response;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding a GET /v1/documents response of 10 to 10,000 documents.
+ *
+ *   gsonTree   — the former listDocuments path: the body read into a String,
+ *                parsed into a JsonObject tree, then copied field by field
+ *   streaming  — ResponseDecoder.decodeList, which listDocuments uses now
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListDecodeBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int documents;
+
+    private final Gson gson = new Gson();
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = Fixtures.listResponse(documents);
+    }
+
+    @Benchmark
+    public DocumentList gsonTree() throws IOException {
+        String body = DocScanClient.readResponse(response());
+        JsonObject json = gson.fromJson(body, JsonObject.class);
+        JsonArray arr = json.getAsJsonArray("documents");
+
+        DocumentList list = new DocumentList();
+        list.count = json.get("count").getAsInt();
+        list.requestId = string(json, "requestId");
+        list.documents = new DocumentInfo[arr.size()];
+        for (int i = 0; i < arr.size(); i++) {
+            JsonObject d = arr.get(i).getAsJsonObject();
+            JsonObject ocr = d.getAsJsonObject("ocr");
+            DocumentInfo info = new DocumentInfo();
+            info.id = string(d, "id");
+            info.mimeType = string(d, "mimeType");
+            info.sizeBytes = d.get("sizeBytes").getAsLong();
+            info.isImage = d.get("isImage").getAsBoolean();
+            info.uploadedAt = string(d, "uploadedAt");
+            info.hasExtractedText = ocr.get("hasExtractedText").getAsBoolean();
+            info.textFileId = string(ocr, "textFileId");
+            list.documents[i] = info;
+        }
+        return list;
+    }
+
+    @Benchmark
+    public DocumentList streaming() throws IOException {
+        try (Response res = response()) {
+            return ResponseDecoder.decodeList(res.body());
+        }
+    }
+
+    private Response response() {
+        return new Response(200, Collections.emptyMap(), new ByteArrayInputStream(payload), null);
+    }
+
+    private static String string(JsonObject obj, String key) {
+        JsonElement e = obj.get(key);
+        return e == null || e.isJsonNull() ? null : e.getAsString();
+    }
+}
@@ -0,0 +1,77 @@
+package com.docupload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Multipart encoding of an upload, from a 1 KB receipt to a 50 MB PDF.
+ *
+ *   build       — per-upload setup: boundary + part headers
+ *   writeTo     — body written to a blocking stream (UrlConnectionTransport)
+ *   openStream  — body read as a stream (HttpClientTransport's publisher)
+ *
+ * The sink discards bytes, so this is the encoding cost alone, without
+ * network I/O.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultipartBodyBenchmark {
+
+    @Param({"1024", "1048576", "52428800"})
+    public long fileSize;
+
+    private Path file;
+    private MultipartBody body;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Fixtures.tempFile(fileSize);
+        body = build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public MultipartBody build() {
+        String boundary = "----DocScanBoundary" + UUID.randomUUID().toString().replace("-", "");
+        return new MultipartBody(boundary, file, fileSize, "scan.pdf", "application/pdf");
+    }
+
+    @Benchmark
+    public long writeTo() throws IOException {
+        body.writeTo(OutputStream.nullOutputStream());
+        return body.contentLength();
+    }
+
+    @Benchmark
+    public long openStream() throws IOException {
+        try (InputStream in = body.openStream()) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
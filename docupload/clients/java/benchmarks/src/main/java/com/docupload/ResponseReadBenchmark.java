@@ -0,0 +1,73 @@
+package com.docupload;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import com.docupload.DocScanClient.UploadResult;
+import com.docupload.DocScanTransport.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading an upload response whose extracted text ranges from a receipt
+ * (1 KB) to a long PDF (16 MB of text).
+ *
+ *   readResponse  — BufferedReader line concatenation into one String
+ *                   (still used for error bodies and health)
+ *   readAllBytes  — baseline: bytes decoded once
+ *   decodeUpload  — streaming decode straight into an UploadResult
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseReadBenchmark {
+
+    @Param({"1024", "1048576", "16777216"})
+    public int textChars;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = Fixtures.uploadResponse(textChars);
+    }
+
+    @Benchmark
+    public String readResponse() throws IOException {
+        return DocScanClient.readResponse(response());
+    }
+
+    @Benchmark
+    public String readAllBytes() throws IOException {
+        try (Response res = response()) {
+            return new String(res.body().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public UploadResult decodeUpload() throws IOException {
+        try (Response res = response()) {
+            return ResponseDecoder.decodeUpload(res.body());
+        }
+    }
+
+    private Response response() {
+        return new Response(201, Collections.emptyMap(), new ByteArrayInputStream(payload), null);
+    }
+}
@@ -0,0 +1,71 @@
+package com.docupload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the gateway on a loopback port. Uploads are read
+ * to the end and answered with a canned response; listing returns a canned
+ * page. Nothing is stored, so the client's own costs dominate the numbers.
+ */
+final class StubServer implements AutoCloseable {
+
+    static {
+        // Without TCP_NODELAY, small responses stall on delayed ACKs (~40 ms)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] uploadResponse;
+    private final byte[] listResponse;
+
+    StubServer(byte[] uploadResponse, byte[] listResponse) throws IOException {
+        this.uploadResponse = uploadResponse;
+        this.listResponse = listResponse;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-server");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v1/documents", this::documents);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void documents(HttpExchange exchange) throws IOException {
+        try {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            boolean upload = "POST".equals(exchange.getRequestMethod());
+            byte[] body = upload ? uploadResponse : listResponse;
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(upload ? 201 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
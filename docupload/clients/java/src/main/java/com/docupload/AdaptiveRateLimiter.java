@@ -0,0 +1,245 @@
+package com.docupload;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Adaptive Rate Limiter
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Client-side token bucket kept in sync with the gateway's rate-limit
+ * headers, so callers pace themselves just under the limit instead of
+ * bursting into 429s.
+ *
+ * After every response the remaining quota (minus a safety margin for
+ * requests still in flight) is spread evenly over the time left in the
+ * window:
+ *
+ *   X-RateLimit-Limit / RateLimit-Limit          requests per window
+ *   X-RateLimit-Remaining / RateLimit-Remaining  requests left in window
+ *   RateLimit-Reset                              seconds until reset
+ *   X-RateLimit-Reset                            reset time (epoch seconds)
+ *
+ * When the quota is spent, or a 429 arrives, every caller waits until the
+ * window resets (or Retry-After elapses). Until the first response arrives
+ * only one request is let through, so a cold start cannot burst past the
+ * limit; if the gateway sends no rate-limit headers, pacing switches off.
+ *
+ * Thread-safe. Share one instance between all clients using the same API
+ * key, since the gateway counts requests per key.
+ * ═══════════════════════════════════════════════════════════════════════════
+ */
+public class AdaptiveRateLimiter {
+
+    /** Fraction of the limit held back for requests already in flight. */
+    public static final double DEFAULT_SAFETY_MARGIN = 0.05;
+
+    private final double safetyMargin;
+
+    // Guarded by this
+    private long intervalNanos;      // time per permit; 0 = unlimited
+    private long nextFreeNanos;      // when the next permit becomes available
+    private double storedPermits;    // unused permits, up to maxBurst
+    private double maxBurst = 1;
+    private long limit = -1;
+    private long remaining = -1;
+    private boolean synced;                        // a response has been seen
+    private CompletableFuture<Void> firstResponse; // set while the first request is in flight
+
+    public AdaptiveRateLimiter() {
+        this(DEFAULT_SAFETY_MARGIN);
+    }
+
+    /**
+     * @param safetyMargin  Fraction of the window's limit (at least one request)
+     *                      never spent, to absorb concurrent in-flight calls
+     */
+    public AdaptiveRateLimiter(double safetyMargin) {
+        if (safetyMargin < 0 || safetyMargin >= 1) {
+            throw new IllegalArgumentException("safetyMargin must be in [0, 1)");
+        }
+        this.safetyMargin = safetyMargin;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    // ─── Acquiring Permits ─────────────────────────────────────────────────
+
+    /** Block until the next request may be sent. */
+    public void acquire() throws InterruptedIOException {
+        try {
+            for (CompletableFuture<Void> gate = firstResponseGate(); gate != null; gate = firstResponseGate()) {
+                gate.get();
+            }
+            long waitNanos = reserve();
+            if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for rate limit");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Completes when the next request may be sent, without blocking a thread. */
+    public CompletableFuture<Void> acquireAsync() {
+        CompletableFuture<Void> gate = firstResponseGate();
+        if (gate != null) return gate.thenCompose(ignored -> acquireAsync());
+
+        long waitNanos = reserve();
+        if (waitNanos <= 0) return CompletableFuture.completedFuture(null);
+        return CompletableFuture.runAsync(() -> {},
+            CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Before the first response, let exactly one caller through and make the
+     * rest wait for its response. Returns null if the caller may proceed.
+     */
+    private synchronized CompletableFuture<Void> firstResponseGate() {
+        if (synced) return null;
+        if (firstResponse == null) {
+            firstResponse = new CompletableFuture<>();
+            return null;
+        }
+        return firstResponse;
+    }
+
+    private void openGate(boolean responseSeen) {
+        CompletableFuture<Void> gate;
+        synchronized (this) {
+            if (synced) return;
+            synced = responseSeen;
+            gate = firstResponse;
+            firstResponse = null;
+        }
+        if (gate != null) gate.complete(null);
+    }
+
+    /**
+     * Reserve one permit and return how long the caller must wait before
+     * using it (0 if it can go right away).
+     */
+    synchronized long reserve() {
+        long now = System.nanoTime();
+        if (intervalNanos == 0 && nextFreeNanos <= now) return 0;
+
+        if (now > nextFreeNanos) {
+            if (intervalNanos > 0) {
+                storedPermits = Math.min(maxBurst, storedPermits + (double) (now - nextFreeNanos) / intervalNanos);
+            }
+            nextFreeNanos = now;
+        }
+        long wait = nextFreeNanos - now;
+        double fromStored = Math.min(1, storedPermits);
+        storedPermits -= fromStored;
+        nextFreeNanos += (long) ((1 - fromStored) * intervalNanos);
+        return wait;
+    }
+
+    // ─── Syncing with the Gateway ──────────────────────────────────────────
+
+    /**
+     * Update the bucket from a response's rate-limit headers.
+     * Called by {@link DocScanClient} after every rate-limited request.
+     *
+     * @param status  HTTP status of the response
+     * @param res     Response carrying the headers
+     */
+    void onResponse(int status, DocScanTransport.Response res) {
+        try {
+            update(status, res);
+        } finally {
+            openGate(true);
+        }
+    }
+
+    /**
+     * A rate-limited request failed without a response. If it was the first
+     * request, the next waiting caller is let through in its place.
+     */
+    void onFailure() {
+        openGate(false);
+    }
+
+    private void update(int status, DocScanTransport.Response res) {
+        long now = System.nanoTime();
+        long newLimit = parseLong(firstHeader(res, "RateLimit-Limit", "X-RateLimit-Limit"));
+        long newRemaining = parseLong(firstHeader(res, "RateLimit-Remaining", "X-RateLimit-Remaining"));
+        long resetInNanos = resetInNanos(res);
+
+        if (status == 429) {
+            long retryAfterMs = RetryPolicy.parseRetryAfterMillis(res.header("Retry-After"));
+            long blockNanos = retryAfterMs >= 0 ? TimeUnit.MILLISECONDS.toNanos(retryAfterMs) : resetInNanos;
+            onRejected(now, blockNanos >= 0 ? blockNanos : TimeUnit.SECONDS.toNanos(1));
+            return;
+        }
+        if (newLimit <= 0 || newRemaining < 0 || resetInNanos <= 0) return;
+
+        synchronized (this) {
+            limit = newLimit;
+            remaining = newRemaining;
+            long margin = Math.max(1, (long) Math.ceil(newLimit * safetyMargin));
+            long spendable = newRemaining - margin;
+            maxBurst = Math.max(1, newLimit * safetyMargin);
+
+            if (spendable <= 0) {
+                // Quota spent: hold everyone until the window resets, then pace at limit/window
+                nextFreeNanos = Math.max(nextFreeNanos, now + resetInNanos);
+                storedPermits = 0;
+                intervalNanos = resetInNanos / Math.max(1, newLimit - margin);
+            } else {
+                intervalNanos = resetInNanos / spendable;
+            }
+        }
+    }
+
+    private synchronized void onRejected(long now, long blockNanos) {
+        remaining = 0;
+        storedPermits = 0;
+        nextFreeNanos = Math.max(nextFreeNanos, now + blockNanos);
+    }
+
+    /** Last limit reported by the gateway, or -1 if none seen yet. */
+    public synchronized long limit() {
+        return limit;
+    }
+
+    /** Last remaining quota reported by the gateway, or -1 if none seen yet. */
+    public synchronized long remaining() {
+        return remaining;
+    }
+
+    // ─── Internal Helpers ──────────────────────────────────────────────────
+
+    private static long resetInNanos(DocScanTransport.Response res) {
+        // Draft standard header: seconds until reset
+        long delta = parseLong(res.header("RateLimit-Reset"));
+        if (delta >= 0) return TimeUnit.SECONDS.toNanos(Math.max(delta, 1));
+
+        // Legacy header: epoch seconds (older servers send a delta)
+        long legacy = parseLong(res.header("X-RateLimit-Reset"));
+        if (legacy < 0) return -1;
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        long seconds = legacy > 1_000_000_000L ? legacy - nowSeconds : legacy;
+        return TimeUnit.SECONDS.toNanos(Math.max(seconds, 1));
+    }
+
+    private static String firstHeader(DocScanTransport.Response res, String... names) {
+        for (String name : names) {
+            String value = res.header(name);
+            if (value != null) return value;
+        }
+        return null;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.docupload;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import com.docupload.DocScanClient.UploadResult;
+
+/**
+ * ═══════════════════════════════════════════════════════════════════════════
+ * DocScan Bulk Uploader
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Walks a directory tree and uploads every regular file through a shared
+ * {@link DocScanClient}, with at most maxConcurrency uploads in flight.
+ *
+ * Each upload runs on its own thread: a virtual thread on Java 21+, a
+ * daemon platform thread on Java 11-20 (see {@link VirtualThreads}). The
+ * directory walk is lazy and blocks while all slots are busy, so drop
+ * folders with tens of thousands of files are never queued in memory.
+ *
+ * Usage:
+ *   BulkUploader bulk = new BulkUploader(client, 32);
+ *   BulkUploader.Report report = bulk.uploadDirectory(Paths.get("/scans/inbox"));
+ *   System.out.println(report);
+ *   report.failures.forEach(f -> System.err.println(f.path + ": " + f.error));
+ * ═══════════════════════════════════════════════════════════════════════════
+ */
+public class BulkUploader {
+
+    private final DocScanClient client;
+    private final int maxConcurrency;
+
+    /**
+     * @param client          Client to upload through (shared, thread-safe)
+     * @param maxConcurrency  Max uploads in flight at once
+     */
+    public BulkUploader(DocScanClient client, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be >= 1");
+        }
+        this.client = client;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    // ─── Data Classes ──────────────────────────────────────────────────────
+
+    /** A file that could not be uploaded. */
+    public static class Failure {
+        public final Path path;
+        public final Exception error;
+
+        public Failure(Path path, Exception error) {
+            this.path = path;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Failure{path='%s', error='%s'}", path, error);
+        }
+    }
+
+    /** Aggregated outcome of a bulk run. */
+    public static class Report {
+        public List<UploadResult> uploaded;
+        public List<Failure> failures;
+        public long bytesUploaded;
+        public Duration elapsed;
+        public boolean usedVirtualThreads;
+
+        public int filesAttempted() {
+            return uploaded.size() + failures.size();
+        }
+
+        public double filesPerSecond() {
+            return perSecond(uploaded.size());
+        }
+
+        public double bytesPerSecond() {
+            return perSecond(bytesUploaded);
+        }
+
+        private double perSecond(double amount) {
+            long nanos = elapsed.toNanos();
+            return nanos == 0 ? 0 : amount * 1_000_000_000d / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "Report{uploaded=%d, failed=%d, bytes=%d, elapsed=%dms, files/s=%.1f, MB/s=%.2f, virtualThreads=%b}",
+                uploaded.size(), failures.size(), bytesUploaded, elapsed.toMillis(),
+                filesPerSecond(), bytesPerSecond() / (1024 * 1024), usedVirtualThreads
+            );
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════
+    // BULK METHODS
+    // ═══════════════════════════════════════════════════════════════════════
+
+    /**
+     * Upload every regular file under a directory (recursively).
+     */
+    public Report uploadDirectory(Path root) throws IOException {
+        return uploadDirectory(root, p -> true);
+    }
+
+    /**
+     * Upload every regular file under a directory that matches a filter.
+     *
+     * @param root    Directory to walk
+     * @param filter  Files to include, e.g. {@code p -> p.toString().endsWith(".pdf")}
+     * @return        Results, failures and throughput of the run
+     */
+    public Report uploadDirectory(Path root, Predicate<Path> filter) throws IOException {
+        if (!Files.isDirectory(root)) {
+            throw new IOException("Not a directory: " + root);
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            return uploadAll(files.filter(Files::isRegularFile).filter(filter).iterator());
+        }
+    }
+
+    /**
+     * Upload a list of files.
+     */
+    public Report upload(List<Path> files) throws IOException {
+        return uploadAll(files.iterator());
+    }
+
+    // ─── Internal Helpers ──────────────────────────────────────────────────
+
+    private Report uploadAll(Iterator<Path> files) throws IOException {
+        Queue<UploadResult> uploaded = new ConcurrentLinkedQueue<>();
+        Queue<Failure> failures = new ConcurrentLinkedQueue<>();
+        LongAdder bytes = new LongAdder();
+        Semaphore slots = new Semaphore(maxConcurrency);
+
+        long start = System.nanoTime();
+        ExecutorService pool = VirtualThreads.newTaskExecutor("docscan-bulk");
+        try {
+            while (files.hasNext()) {
+                Path file = files.next();
+                slots.acquire();
+                pool.execute(() -> {
+                    try {
+                        UploadResult result = client.uploadDocument(file.toString());
+                        uploaded.add(result);
+                        bytes.add(result.sizeBytes);
+                    } catch (Exception e) {
+                        failures.add(new Failure(file, e));
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+            // Wait for the last uploads to drain
+            slots.acquire(maxConcurrency);
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Bulk upload interrupted");
+        } finally {
+            pool.shutdown();
+        }
+
+        Report report = new Report();
+        report.uploaded = new ArrayList<>(uploaded);
+        report.failures = new ArrayList<>(failures);
+        report.bytesUploaded = bytes.sum();
+        report.elapsed = Duration.ofNanos(System.nanoTime() - start);
+        report.usedVirtualThreads = VirtualThreads.available();
+        return report;
+    }
+}
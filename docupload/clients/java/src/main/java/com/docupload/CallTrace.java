@@ -0,0 +1,218 @@
+package com.docupload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import com.docupload.DocScanClient.DocumentInfo;
+import com.docupload.DocScanClient.Endpoint;
+import com.docupload.DocScanClient.OcrJob;
+import com.docupload.DocScanClient.UploadResult;
+import com.docupload.DocScanEvents.Phase;
+import com.docupload.DocScanTransport.Body;
+import com.docupload.DocScanTransport.Request;
+import com.docupload.DocScanTransport.Response;
+
+/**
+ * Times the phases of one request as {@link DocScanEvents}. Works with any
+ * transport: the request body is wrapped so the transport's first read
+ * ends the connect phase and its last read ends the body write, and the
+ * response body is counted as the handler reads it.
+ *
+ * All events are committed together by {@link #finish}, on the calling
+ * thread, so upload phases can carry the document id from the response.
+ * Body reads may happen on transport threads, hence the synchronisation.
+ */
+final class CallTrace {
+
+    private final Endpoint endpoint;
+    private final String requestId;
+    private final String pathDocumentId;
+    private final Request request;
+    private final long requestBytes;
+
+    private final DocScanEvents.Connect connect = new DocScanEvents.Connect();
+    private final DocScanEvents.UploadWrite write = new DocScanEvents.UploadWrite();
+    private final DocScanEvents.ServerWait serverWait = new DocScanEvents.ServerWait();
+    private final Phase read;
+
+    // Guarded by this
+    private boolean connectTimed;
+    private boolean writeStarted;
+    private boolean writeTimed;
+    private boolean waitStarted;
+    private boolean responded;
+    private boolean finished;
+    private CountingInputStream requestBody;
+    private CountingInputStream responseBody;
+
+    private CallTrace(Endpoint endpoint, Request request) {
+        this.endpoint = endpoint;
+        this.requestId = request.headers().get("X-Request-Id");
+        this.pathDocumentId = documentIdFromPath(request.uri().getRawPath());
+        this.requestBytes = request.body() != null ? Math.max(request.body().contentLength(), 0) : 0;
+        this.request = request.body() != null ? withTracedBody(request) : request;
+        this.read = endpoint == Endpoint.DOWNLOAD ? new DocScanEvents.Download() : new DocScanEvents.ResponseDecode();
+    }
+
+    /** A trace for request, or null when no recording wants DocScan events. */
+    static CallTrace create(Endpoint endpoint, Request request) {
+        return DocScanEvents.enabled() ? new CallTrace(endpoint, request) : null;
+    }
+
+    /** The request to send: a copy whose body reports the write phase. */
+    Request request() {
+        return request;
+    }
+
+    /** The request is being handed to the transport. */
+    synchronized void start() {
+        if (request.body() != null) {
+            connect.begin();
+        } else {
+            serverWait.begin();
+            waitStarted = true;
+        }
+    }
+
+    /** The response headers arrived; returns the response with its body counted. */
+    synchronized Response responded(Response res) {
+        if (request.body() != null) {
+            if (!writeStarted) {
+                connect.end();
+                connectTimed = true;
+            } else if (!writeTimed) {
+                endWrite(-1);   // the server answered before reading the whole body
+            }
+        }
+        if (waitStarted) serverWait.end();
+        serverWait.status = res.statusCode();
+        responded = true;
+        read.begin();
+        responseBody = new CountingInputStream(res.body());
+        return new Response(res.statusCode(), res.headers(), responseBody, () -> {
+            try {
+                res.close();
+            } catch (IOException ignored) {
+                // The counting stream already closed the body
+            }
+        });
+    }
+
+    /**
+     * Commit the phases timed so far.
+     *
+     * @param result  The decoded result, used for the document id of uploads; may be null
+     */
+    synchronized void finish(Object result) {
+        if (finished) return;
+        finished = true;
+        String documentId = documentIdOf(result);
+
+        if (connectTimed) {
+            connect.requestBytes = requestBytes;
+            commit(connect, documentId);
+        }
+        if (writeTimed) commit(write, documentId);
+        if (waitStarted) {
+            if (!responded) {
+                serverWait.end();
+                serverWait.status = -1;
+            }
+            serverWait.requestBytes = requestBytes;
+            commit(serverWait, documentId);
+        }
+        if (responded) {
+            read.end();
+            long bytes = responseBody.count();
+            if (read instanceof DocScanEvents.Download) ((DocScanEvents.Download) read).bytes = bytes;
+            else ((DocScanEvents.ResponseDecode) read).bytes = bytes;
+            commit(read, documentId);
+        }
+    }
+
+    private void commit(Phase event, String documentId) {
+        event.endpoint = endpoint.name().toLowerCase(Locale.ROOT);
+        event.documentId = documentId;
+        event.requestId = requestId;
+        event.commit();
+    }
+
+    // ─── Request Body ──────────────────────────────────────────────────────
+
+    private synchronized void startWrite() {
+        if (writeStarted) return;
+        writeStarted = true;
+        connect.end();
+        connectTimed = true;
+        write.begin();
+    }
+
+    /** @param bytes  Bytes written, or -1 if unknown (the count so far is used) */
+    private synchronized void endWrite(long bytes) {
+        if (writeTimed || !writeStarted) return;
+        writeTimed = true;
+        write.end();
+        write.bytes = bytes >= 0 ? bytes : requestBody != null ? requestBody.count() : 0;
+        serverWait.begin();
+        waitStarted = true;
+    }
+
+    private Request withTracedBody(Request original) {
+        Body body = original.body();
+        Request copy = new Request(original.method(), original.uri()).timeout(original.timeout());
+        original.headers().forEach(copy::header);
+        return copy.body(new Body() {
+            @Override
+            public long contentLength() {
+                return body.contentLength();
+            }
+
+            @Override
+            public String contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                startWrite();
+                CountingInputStream in = new CountingInputStream(body.openStream()) {
+                    @Override
+                    void onEnd() {
+                        endWrite(count());
+                    }
+                };
+                synchronized (CallTrace.this) {
+                    requestBody = in;
+                }
+                return in;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                startWrite();
+                body.writeTo(out);
+                endWrite(body.contentLength());
+            }
+        });
+    }
+
+    // ─── Document Ids ──────────────────────────────────────────────────────
+
+    private String documentIdOf(Object result) {
+        if (result instanceof UploadResult) return ((UploadResult) result).documentId;
+        if (result instanceof OcrJob) return ((OcrJob) result).documentId;
+        if (result instanceof DocumentInfo) return ((DocumentInfo) result).id;
+        return pathDocumentId;
+    }
+
+    /** The {id} of /v1/documents/{id}/... or /v1/jobs/{id}, else null. */
+    private static String documentIdFromPath(String rawPath) {
+        String[] parts = rawPath.split("/");   // "", "v1", "documents", id, ...
+        if (parts.length < 4 || !(parts[2].equals("documents") || parts[2].equals("jobs"))) return null;
+        return URLDecoder.decode(parts[3], StandardCharsets.UTF_8);
+    }
+}
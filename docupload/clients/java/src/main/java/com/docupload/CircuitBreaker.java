@@ -0,0 +1,143 @@
+package com.docupload;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker for one class of DocScan calls (upload, read or delete).
+ *
+ *   CLOSED     — calls flow; failureThreshold consecutive failures open it
+ *   OPEN       — calls fail fast with CircuitOpenException until openDuration
+ *                passes or a health probe reports the service healthy
+ *   HALF_OPEN  — one trial call is let through; success closes the breaker,
+ *                failure opens it again
+ *
+ * Every state change starts a new generation, and a call only reports to
+ * the generation that admitted it: a slow call let through while CLOSED
+ * that ends after the breaker opened cannot close it, count against it,
+ * or release the HALF_OPEN trial slot.
+ *
+ * Thread-safe.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** {@link #tryAcquire} result for a call that must fail fast. */
+    static final long REJECTED = -1;
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    // Guarded by this
+    private State state = State.CLOSED;
+    private long generation;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean trialInFlight;
+    private String lastReason;
+
+    /**
+     * @param name              Label used in error messages, e.g. "upload"
+     * @param failureThreshold  Consecutive failures that open the breaker
+     * @param openDuration      How long to fail fast before allowing a trial call
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        if (failureThreshold < 1) throw new IllegalArgumentException("failureThreshold must be >= 1");
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /** Why the breaker last opened (failure or health probe), or null. */
+    public synchronized String lastReason() {
+        return lastReason;
+    }
+
+    // ─── Call Outcomes ─────────────────────────────────────────────────────
+
+    /**
+     * Ask to make a call. Returns a permit, or {@link #REJECTED} if the call
+     * must fail fast. Every permit must be passed back to exactly one of
+     * {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored}.
+     */
+    synchronized long tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return generation;
+            case OPEN:
+                if (System.nanoTime() - openedAtNanos < openNanos) return REJECTED;
+                transition(State.HALF_OPEN);
+                trialInFlight = true;
+                return generation;
+            case HALF_OPEN:
+            default:
+                if (trialInFlight) return REJECTED;
+                trialInFlight = true;
+                return generation;
+        }
+    }
+
+    synchronized void onSuccess(long permit) {
+        if (permit != generation) return;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        if (state != State.CLOSED) transition(State.CLOSED);
+    }
+
+    synchronized void onFailure(long permit, String reason) {
+        if (permit != generation) return;
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            open(reason);
+        }
+    }
+
+    /** The call ended without saying anything about service health (e.g. interrupted). */
+    synchronized void onIgnored(long permit) {
+        if (permit != generation) return;
+        trialInFlight = false;
+    }
+
+    // ─── Health Probe Input ────────────────────────────────────────────────
+
+    /** The health probe reports this class of calls cannot succeed. */
+    synchronized void forceOpen(String reason) {
+        open(reason);
+    }
+
+    /** The health probe reports the service healthy: allow a trial call now. */
+    synchronized void onHealthy() {
+        if (state == State.OPEN) {
+            transition(State.HALF_OPEN);
+            trialInFlight = false;
+        }
+    }
+
+    private void open(String reason) {
+        transition(State.OPEN);
+        openedAtNanos = System.nanoTime();
+        lastReason = reason;
+    }
+
+    /** Outcomes of calls admitted before this point are ignored from now on. */
+    private void transition(State next) {
+        state = next;
+        generation++;
+        trialInFlight = false;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("CircuitBreaker{name='%s', state=%s, failures=%d}", name, state, consecutiveFailures);
+    }
+}
@@ -0,0 +1,148 @@
+package com.docupload;
+
+import com.google.gson.JsonObject;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import com.docupload.DocScanClient.Endpoint;
+
+/**
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Circuit Breakers
+ * ═══════════════════════════════════════════════════════════════════════════
+ * One {@link CircuitBreaker} per class of calls, so an OCR outage that breaks
+ * uploads does not stop reads and deletes:
+ *
+ *   upload  — uploadDocument, submitDocument
+ *   read    — listDocuments, getDocument, getJob, getExtractedText,
+ *             downloadOriginal, downloadText
+ *   delete  — deleteDocument
+ *
+ * Breakers are fed by call outcomes (I/O errors, 5xx, uploads that came back
+ * with an OCR error) and, when DocScanClient.startHealthProbe() is running,
+ * by the gateway's /v1/health report:
+ *
+ *   gateway unreachable, or backend unreachable  → all breakers open
+ *   backend reports OCR unavailable              → upload breaker opens
+ *   status "ok"                                  → open breakers allow a trial
+ *
+ * The last health report is cached here, so callers can check it without
+ * probing the gateway themselves.
+ * ═══════════════════════════════════════════════════════════════════════════
+ */
+public class CircuitBreakers {
+
+    /** Gateway health as last seen by the probe. */
+    public enum Health { UNKNOWN, OK, DEGRADED, UNREACHABLE }
+
+    private final CircuitBreaker upload;
+    private final CircuitBreaker read;
+    private final CircuitBreaker delete;
+
+    private volatile Health lastHealth = Health.UNKNOWN;
+    private volatile Instant lastHealthAt;
+
+    /** 5 consecutive failures open a breaker for 15 s. */
+    public CircuitBreakers() {
+        this(5, Duration.ofSeconds(15));
+    }
+
+    public CircuitBreakers(int failureThreshold, Duration openDuration) {
+        this.upload = new CircuitBreaker("upload", failureThreshold, openDuration);
+        this.read = new CircuitBreaker("read", failureThreshold, openDuration);
+        this.delete = new CircuitBreaker("delete", failureThreshold, openDuration);
+    }
+
+    /** Breaker guarding an endpoint, or null if the endpoint is not guarded. */
+    public CircuitBreaker forEndpoint(Endpoint endpoint) {
+        switch (endpoint) {
+            case UPLOAD:
+                return upload;
+            case LIST:
+            case INFO:
+            case JOB:
+            case TEXT:
+            case DOWNLOAD:
+                return read;
+            case DELETE:
+                return delete;
+            default:
+                return null;
+        }
+    }
+
+    public CircuitBreaker upload() { return upload; }
+    public CircuitBreaker read()   { return read; }
+    public CircuitBreaker delete() { return delete; }
+
+    public Health lastHealth() {
+        return lastHealth;
+    }
+
+    /** When the health probe last reported, or null if it never has. */
+    public Instant lastHealthAt() {
+        return lastHealthAt;
+    }
+
+    // ─── Health Probe Input ────────────────────────────────────────────────
+
+    /**
+     * Apply a /v1/health report:
+     * { status: ok|degraded, backend: { status, ocr: { status } } }
+     */
+    void onHealthReport(JsonObject health) {
+        JsonObject backend = health.has("backend") && health.get("backend").isJsonObject()
+            ? health.getAsJsonObject("backend") : new JsonObject();
+        String status = stringOrEmpty(health, "status");
+        String backendStatus = stringOrEmpty(backend, "status");
+        String ocrStatus = backend.has("ocr") && backend.get("ocr").isJsonObject()
+            ? stringOrEmpty(backend.getAsJsonObject("ocr"), "status") : "";
+
+        if ("unreachable".equals(backendStatus)) {
+            record(Health.DEGRADED);
+            openAll("health probe: backend unreachable");
+        } else if (!ocrStatus.isEmpty() && !"ok".equals(ocrStatus)) {
+            record(Health.DEGRADED);
+            upload.forceOpen("health probe: OCR " + ocrStatus);
+            read.onHealthy();
+            delete.onHealthy();
+        } else if ("ok".equals(status)) {
+            record(Health.OK);
+            upload.onHealthy();
+            read.onHealthy();
+            delete.onHealthy();
+        } else {
+            record(Health.DEGRADED);
+        }
+    }
+
+    /** The health probe could not reach the gateway at all. */
+    void onHealthUnreachable(String reason) {
+        record(Health.UNREACHABLE);
+        openAll("health probe: gateway unreachable (" + reason + ")");
+    }
+
+    // ─── Internal Helpers ──────────────────────────────────────────────────
+
+    private void openAll(String reason) {
+        upload.forceOpen(reason);
+        read.forceOpen(reason);
+        delete.forceOpen(reason);
+    }
+
+    private void record(Health health) {
+        lastHealth = health;
+        lastHealthAt = Instant.now();
+    }
+
+    private static String stringOrEmpty(JsonObject obj, String key) {
+        return obj.has(key) && !obj.get(key).isJsonNull() ? obj.get(key).getAsString() : "";
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CircuitBreakers{upload=%s, read=%s, delete=%s, health=%s}",
+            upload.state(), read.state(), delete.state(), lastHealth);
+    }
+}
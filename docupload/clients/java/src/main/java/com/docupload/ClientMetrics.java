@@ -0,0 +1,293 @@
+package com.docupload;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.docupload.DocScanClient.ApiException;
+import com.docupload.DocScanClient.Endpoint;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Client Metrics
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Default {@link ClientMetricsListener}: request, error, retry and 429
+ * counts, bytes sent and received, requests in flight, and latency
+ * percentiles over the last minute — per endpoint and in total.
+ *
+ * Recording never blocks on the hot path: counters are LongAdders and
+ * latencies go into a ring of six HdrHistogram Recorders (wait-free for
+ * writers), one per 10 s slot. Each latency lands in the slot of the time
+ * it was recorded, and a writer entering a slot last used a minute ago
+ * clears it first, so percentiles always cover the last 60 s, however
+ * rarely they are read and without a background thread.
+ *
+ * Every endpoint is also exposed over JMX (JConsole, VisualVM, a
+ * Prometheus JMX exporter) once registered:
+ *
+ *   com.docupload:type=DocScanClient,client=<name>,endpoint=upload|list|...|all
+ *
+ * Usage:
+ *   ClientMetrics metrics = new ClientMetrics().registerMBeans("ingest");
+ *   client.setMetricsListener(metrics);
+ *   ...
+ *   System.out.println(metrics.total().getLatencyP99Millis());
+ *   metrics.close();   // unregisters the MBeans
+ * ═══════════════════════════════════════════════════════════════════════════
+ */
+public class ClientMetrics implements ClientMetricsListener, AutoCloseable {
+
+    private final Map<Endpoint, EndpointMetrics> endpoints = new EnumMap<>(Endpoint.class);
+    private final EndpointMetrics total = new EndpointMetrics();
+    private final List<ObjectName> registered = new ArrayList<>();   // guarded by this
+
+    public ClientMetrics() {
+        for (Endpoint e : Endpoint.values()) endpoints.put(e, new EndpointMetrics());
+    }
+
+    /** Metrics of one endpoint. */
+    public EndpointMetrics endpoint(Endpoint endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    /** Metrics of all endpoints together. */
+    public EndpointMetrics total() {
+        return total;
+    }
+
+    // ─── Listener ──────────────────────────────────────────────────────────
+
+    @Override
+    public void onRequestStart(Endpoint endpoint, String requestId) {
+        endpoints.get(endpoint).started();
+        total.started();
+    }
+
+    @Override
+    public void onRequestEnd(Endpoint endpoint, String requestId, int statusCode,
+                             long bytesSent, long bytesReceived, long durationNanos, Throwable error) {
+        endpoints.get(endpoint).ended(statusCode, bytesSent, bytesReceived, durationNanos, error);
+        total.ended(statusCode, bytesSent, bytesReceived, durationNanos, error);
+    }
+
+    @Override
+    public void onRetry(Endpoint endpoint, Throwable cause, long delayMs) {
+        endpoints.get(endpoint).retries.increment();
+        total.retries.increment();
+    }
+
+    // ─── JMX ───────────────────────────────────────────────────────────────
+
+    /**
+     * Register one MBean per endpoint, plus endpoint=all, on the platform
+     * MBean server.
+     *
+     * @param clientName  Distinguishes clients in one JVM, e.g. "ingest"
+     * @return            this
+     */
+    public synchronized ClientMetrics registerMBeans(String clientName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Map.Entry<Endpoint, EndpointMetrics> e : endpoints.entrySet()) {
+                register(server, clientName, e.getKey().name().toLowerCase(Locale.ROOT), e.getValue());
+            }
+            register(server, clientName, "all", total);
+        } catch (JMException e) {
+            unregisterMBeans();
+            throw new IllegalStateException("Could not register client metrics MBeans for " + clientName, e);
+        }
+        return this;
+    }
+
+    private void register(MBeanServer server, String clientName, String endpoint, EndpointMetrics metrics)
+            throws JMException {
+        ObjectName name = new ObjectName("com.docupload:type=DocScanClient,client="
+            + ObjectName.quote(clientName) + ",endpoint=" + endpoint);
+        server.registerMBean(metrics, name);
+        registered.add(name);
+    }
+
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ignored) {
+                // Already gone
+            }
+        }
+        registered.clear();
+    }
+
+    /** Unregister the MBeans. */
+    @Override
+    public void close() {
+        unregisterMBeans();
+    }
+
+    @Override
+    public String toString() {
+        return "ClientMetrics{" + total + "}";
+    }
+
+    // ─── Per-Endpoint Metrics ──────────────────────────────────────────────
+
+    /**
+     * JMX view of one endpoint. Counters are totals since creation; latency
+     * percentiles cover requests that ended in the last minute.
+     */
+    public interface EndpointMetricsMXBean {
+        long getRequests();
+        long getErrors();
+        long getRetries();
+        long getRateLimited();
+        long getBytesSent();
+        long getBytesReceived();
+        long getInFlight();
+        long getLatencyCount();
+        double getLatencyP50Millis();
+        double getLatencyP90Millis();
+        double getLatencyP99Millis();
+        double getLatencyP999Millis();
+        double getLatencyMaxMillis();
+    }
+
+    public static final class EndpointMetrics implements EndpointMetricsMXBean {
+        private static final int SLOTS = 6;
+        private static final long SLOT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder rateLimited = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+
+        // Writer side: latencies (µs) by 10 s epoch, slot = epoch mod SLOTS
+        private final Recorder[] slots = new Recorder[SLOTS];
+        private final AtomicLongArray slotEpochs = new AtomicLongArray(SLOTS);
+
+        // Reader side, guarded by this: what has been drained from each slot
+        private final Histogram[] drained = new Histogram[SLOTS];
+        private final long[] drainedEpochs = new long[SLOTS];
+        private final Histogram scratch = new Histogram(3);
+
+        EndpointMetrics() {
+            long epoch = epoch();
+            for (int i = 0; i < SLOTS; i++) {
+                slots[i] = new Recorder(3);
+                slotEpochs.set(i, epoch - SLOTS);
+                drained[i] = new Histogram(3);
+                drainedEpochs[i] = epoch - SLOTS;
+            }
+        }
+
+        void started() {
+            requests.increment();
+            inFlight.increment();
+        }
+
+        void ended(int statusCode, long sent, long received, long durationNanos, Throwable error) {
+            inFlight.decrement();
+            bytesSent.add(sent);
+            bytesReceived.add(received);
+            slot(epoch()).recordValue(Math.max(durationNanos / 1000, 0));
+            if (error != null) errors.increment();
+            if (statusCode == 429 || error instanceof ApiException && ((ApiException) error).statusCode == 429) {
+                rateLimited.increment();
+            }
+        }
+
+        @Override public long getRequests()      { return requests.sum(); }
+        @Override public long getErrors()        { return errors.sum(); }
+        @Override public long getRetries()       { return retries.sum(); }
+        @Override public long getRateLimited()   { return rateLimited.sum(); }
+        @Override public long getBytesSent()     { return bytesSent.sum(); }
+        @Override public long getBytesReceived() { return bytesReceived.sum(); }
+        @Override public long getInFlight()      { return inFlight.sum(); }
+
+        @Override public long getLatencyCount()        { return lastMinute().getTotalCount(); }
+        @Override public double getLatencyP50Millis()  { return percentile(50); }
+        @Override public double getLatencyP90Millis()  { return percentile(90); }
+        @Override public double getLatencyP99Millis()  { return percentile(99); }
+        @Override public double getLatencyP999Millis() { return percentile(99.9); }
+
+        @Override
+        public double getLatencyMaxMillis() {
+            Histogram h = lastMinute();
+            return h.getTotalCount() == 0 ? 0 : h.getMaxValue() / 1000.0;
+        }
+
+        /**
+         * The recorder for epoch, cleared first if it still holds an older
+         * epoch. Only the first writer of an epoch takes the lock.
+         */
+        private Recorder slot(long epoch) {
+            int i = (int) Math.floorMod(epoch, (long) SLOTS);
+            if (slotEpochs.get(i) < epoch) {
+                synchronized (slots[i]) {
+                    if (slotEpochs.get(i) < epoch) {
+                        slots[i].reset();
+                        slotEpochs.set(i, epoch);
+                    }
+                }
+            }
+            return slots[i];
+        }
+
+        /** Latencies (µs) of requests that ended in the last minute. */
+        public synchronized Histogram lastMinute() {
+            long epoch = epoch();
+            Histogram window = new Histogram(3);
+            for (int i = 0; i < SLOTS; i++) {
+                // Read the epoch after draining: values recorded after a
+                // rotation belong to the new epoch, not the one before it
+                slots[i].getIntervalHistogramInto(scratch);
+                long slotEpoch = slotEpochs.get(i);
+                if (drainedEpochs[i] != slotEpoch) {
+                    drained[i].reset();
+                    drainedEpochs[i] = slotEpoch;
+                }
+                drained[i].add(scratch);
+                if (epoch - slotEpoch < SLOTS) window.add(drained[i]);
+            }
+            return window;
+        }
+
+        private double percentile(double p) {
+            Histogram h = lastMinute();
+            return h.getTotalCount() == 0 ? 0 : h.getValueAtPercentile(p) / 1000.0;
+        }
+
+        private static long epoch() {
+            return Math.floorDiv(System.nanoTime(), SLOT_NANOS);
+        }
+
+        @Override
+        public String toString() {
+            Histogram h = lastMinute();
+            boolean empty = h.getTotalCount() == 0;
+            return String.format(
+                "requests=%d, errors=%d, retries=%d, 429s=%d, inFlight=%d, sent=%d B, received=%d B, "
+                    + "p50=%.1fms, p99=%.1fms (last minute)",
+                getRequests(), getErrors(), getRetries(), getRateLimited(), getInFlight(),
+                getBytesSent(), getBytesReceived(),
+                empty ? 0 : h.getValueAtPercentile(50) / 1000.0, empty ? 0 : h.getValueAtPercentile(99) / 1000.0
+            );
+        }
+    }
+}
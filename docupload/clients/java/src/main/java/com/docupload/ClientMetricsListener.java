@@ -0,0 +1,55 @@
+package com.docupload;
+
+import com.docupload.DocScanClient.Endpoint;
+
+/**
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Client Metrics Listener
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Receives the lifecycle events of every HTTP request {@link DocScanClient}
+ * makes, sync and async alike. Install one with
+ * {@link DocScanClient#setMetricsListener}; {@link ClientMetrics} is the
+ * ready-made implementation (counters, latency histograms, JMX).
+ *
+ * For one call the events are:
+ *
+ *   onRequestStart → onRequestEnd                       one attempt
+ *   [onRetry → onRequestStart → onRequestEnd]...        each retry
+ *
+ * A request starts once the client-side rate limiter has let it through and
+ * ends once its response has been decoded (or the attempt failed). Calls
+ * rejected by an open circuit breaker produce no events.
+ *
+ * Methods run on the calling thread (or the client's executor for the
+ * *Async methods), so they must be thread-safe and fast. Exceptions thrown
+ * by a listener are ignored.
+ * ═══════════════════════════════════════════════════════════════════════════
+ */
+public interface ClientMetricsListener {
+
+    /**
+     * An HTTP request is about to be sent.
+     *
+     * @param requestId  X-Request-Id sent with it (null for health checks)
+     */
+    default void onRequestStart(Endpoint endpoint, String requestId) {}
+
+    /**
+     * A request finished: its response was handled, or it failed.
+     *
+     * @param statusCode     HTTP status, or -1 if no response arrived
+     * @param bytesSent      Request body bytes handed to the transport
+     * @param bytesReceived  Response body bytes read
+     * @param durationNanos  From onRequestStart until now
+     * @param error          The failure (including ApiException for error responses), or null
+     */
+    default void onRequestEnd(Endpoint endpoint, String requestId, int statusCode,
+                              long bytesSent, long bytesReceived, long durationNanos, Throwable error) {}
+
+    /**
+     * A failed attempt will be retried after delayMs.
+     *
+     * @param cause  The failure being retried
+     */
+    default void onRetry(Endpoint endpoint, Throwable cause, long delayMs) {}
+}
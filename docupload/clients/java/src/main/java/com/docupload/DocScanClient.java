@@ -3,16 +3,37 @@ package com.docupload;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonArray;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.math.BigDecimal;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.docupload.DocScanTransport.Request;
+import com.docupload.DocScanTransport.Response;
 
 /**
  * ═══════════════════════════════════════════════════════════════════════════
@@ -31,6 +52,11 @@ import java.util.UUID;
  *   // List all documents
  *   DocumentList docs = client.listDocuments();
  *
+ *   // Or walk a large collection page by page
+ *   try (Stream<DocumentInfo> all = client.streamDocuments(500)) {
+ *       all.filter(d -> d.hasExtractedText).forEach(d -> System.out.println(d.id));
+ *   }
+ *
  *   // Download original
  *   client.downloadOriginal(result.documentId, "/path/to/save/receipt.jpg");
  *
@@ -43,15 +69,46 @@ import java.util.UUID;
  *   // Delete
  *   client.deleteDocument(result.documentId);
  *
- * Requirements: Java 11+, Gson dependency
+ *   // Non-blocking variants return CompletableFuture
+ *   client.uploadDocumentAsync("/path/to/scan.pdf")
+ *         .thenAccept(r -> System.out.println(r.characterCount));
+ *
+ * Requests go through a {@link DocScanTransport}; by default a shared,
+ * pooled {@link HttpClientTransport}. One client instance is thread-safe
+ * and meant to be shared by all callers. Each call is paced by an
+ * {@link AdaptiveRateLimiter}, retried per {@link RetryPolicy} and guarded
+ * by {@link CircuitBreakers}; a {@link ClientMetricsListener} can observe
+ * every request.
+ *
+ * Requirements: Java 11+, Gson and HdrHistogram (ClientMetrics) dependencies
  * ═══════════════════════════════════════════════════════════════════════════
  */
-public class DocScanClient {
+public class DocScanClient implements AutoCloseable {
+
+    /**
+     * Default per-request timeout: a synchronous upload waits for OCR, which
+     * the gateway allows up to its UPLOAD_TIMEOUT_MS (OCR_TIMEOUT_MS 600 s
+     * plus 60 s by default).
+     */
+    public static final int DEFAULT_TIMEOUT_MS = 660_000;
+
+    /** Connect timeout cap, so a dead host fails in seconds rather than after timeoutMs. */
+    private static final int MAX_CONNECT_TIMEOUT_MS = 10_000;
+
+    /** Flight Recorder events need the jdk.jfr module, which minimal runtimes may leave out. */
+    private static final boolean JFR_AVAILABLE = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
 
     private final String baseUrl;
     private final String apiKey;
     private final Gson gson;
     private final int timeoutMs;
+    private final DocScanTransport transport;
+    private volatile Executor executor = ForkJoinPool.commonPool();
+    private volatile AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter();
+    private volatile RetryPolicy retryPolicy = RetryPolicy.defaults();
+    private volatile CircuitBreakers circuitBreakers = new CircuitBreakers();
+    private volatile ClientMetricsListener metricsListener;
+    private ScheduledExecutorService healthProbe;  // guarded by this
 
     // ─── Configuration ─────────────────────────────────────────────────────
 
@@ -62,16 +119,112 @@ public class DocScanClient {
      * @param apiKey   API key for authentication
      */
     public DocScanClient(String baseUrl, String apiKey) {
-        this(baseUrl, apiKey, 120_000);
+        this(baseUrl, apiKey, DEFAULT_TIMEOUT_MS);
     }
 
     public DocScanClient(String baseUrl, String apiKey, int timeoutMs) {
+        this(baseUrl, apiKey, timeoutMs, new HttpClientTransport(Math.min(timeoutMs, MAX_CONNECT_TIMEOUT_MS)));
+    }
+
+    /**
+     * Create a client on a custom transport, e.g. an {@link HttpClientTransport}
+     * with a different per-host connection limit, shared between clients.
+     *
+     * @param timeoutMs  Per-request response timeout
+     * @param transport  HTTP transport (must be thread-safe)
+     */
+    public DocScanClient(String baseUrl, String apiKey, int timeoutMs, DocScanTransport transport) {
         this.baseUrl = baseUrl.replaceAll("/+$", "");
         this.apiKey = apiKey;
         this.timeoutMs = timeoutMs;
+        this.transport = transport;
         this.gson = new GsonBuilder().setPrettyPrinting().create();
     }
 
+    /**
+     * Executor that runs response decoding for the *Async methods (and, on
+     * transports without native async support, the blocking I/O itself).
+     * Defaults to the common ForkJoinPool.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Client-side limiter that paces requests from the gateway's rate-limit
+     * headers. Each client gets its own by default; share one instance between
+     * clients using the same API key, or pass null to disable pacing.
+     */
+    public void setRateLimiter(AdaptiveRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public AdaptiveRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * How failed calls are retried. Defaults to {@link RetryPolicy#defaults()};
+     * use {@link RetryPolicy#none()} to surface every failure immediately.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Per-endpoint-class circuit breakers (upload, read, delete). Each client
+     * gets its own by default; pass null to disable fail-fast behaviour.
+     */
+    public void setCircuitBreakers(CircuitBreakers circuitBreakers) {
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    public CircuitBreakers getCircuitBreakers() {
+        return circuitBreakers;
+    }
+
+    /**
+     * Listener told about every request, retry and response, e.g. a
+     * {@link ClientMetrics}. None by default; pass null to remove it.
+     */
+    public void setMetricsListener(ClientMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    public ClientMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Probe /v1/health in the background and feed the result to the circuit
+     * breakers, so outages are detected (and recoveries noticed) without
+     * waiting for calls to fail. Stopped by {@link #close()}.
+     *
+     * @param interval  Delay between probes
+     */
+    public synchronized void startHealthProbe(Duration interval) {
+        stopHealthProbe();
+        healthProbe = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "docscan-health-probe");
+            t.setDaemon(true);
+            return t;
+        });
+        healthProbe.scheduleWithFixedDelay(this::probeHealth, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopHealthProbe() {
+        if (healthProbe != null) {
+            healthProbe.shutdownNow();
+            healthProbe = null;
+        }
+    }
+
+    /** Stop background work (the health probe). The transport is left open. */
+    @Override
+    public void close() {
+        stopHealthProbe();
+    }
+
     // ─── Data Classes ──────────────────────────────────────────────────────
 
     /** Result from uploading a document. */
@@ -87,6 +240,13 @@ public class DocScanClient {
         public int characterCount;
         public String ocrError;
         public String requestId;
+        /**
+         * Server-side stage durations in ms from the Server-Timing header,
+         * in the order the hops reported them: ocr-* (OCR service), api-*,
+         * then gw-* (gateway), e.g. "ocr-recognise" or "gw-total". Empty if
+         * the server sent none.
+         */
+        public Map<String, Double> timings;
 
         @Override
         public String toString() {
@@ -118,7 +278,73 @@ public class DocScanClient {
     public static class DocumentList {
         public DocumentInfo[] documents;
         public int count;
+        /** Cursor for the next page, or null on the last page (or if not paginated). */
+        public String nextCursor;
+        public String requestId;
+    }
+
+    /** An OCR job started by {@link #submitDocument(String)}. */
+    public static class OcrJob {
+        public String id;
+        public String documentId;
+        /** queued, processing, done, failed or skipped (no OCR for this file type). */
+        public String status;
+        public String createdAt;
+        public String startedAt;
+        public String finishedAt;
+        public String textFileId;
+        public int characterCount;
+        public String error;
         public String requestId;
+
+        public boolean isFinished() {
+            return "done".equals(status) || "failed".equals(status) || "skipped".equals(status);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("OcrJob{id='%s', status=%s, chars=%d%s}",
+                id, status, characterCount, error != null ? ", error='" + error + "'" : "");
+        }
+    }
+
+    /** API operations, as seen by rate limiting and other per-call policies. */
+    public enum Endpoint {
+        UPLOAD(true),
+        LIST(true),
+        INFO(true),
+        JOB(true),
+        TEXT(true),
+        DOWNLOAD(true),
+        DELETE(true),
+        /** Unauthenticated, so the gateway counts it per IP rather than per key. */
+        HEALTH(false);
+
+        final boolean rateLimited;
+
+        Endpoint(boolean rateLimited) {
+            this.rateLimited = rateLimited;
+        }
+    }
+
+    /** Thrown without contacting the server while a circuit breaker is open. */
+    public static class CircuitOpenException extends IOException {
+        public final String circuit;
+
+        public CircuitOpenException(String circuit, String reason) {
+            super("Circuit '" + circuit + "' is open" + (reason != null ? ": " + reason : ""));
+            this.circuit = circuit;
+        }
+    }
+
+    /** An OCR job awaited with awaitText() finished with status "failed". */
+    public static class JobFailedException extends IOException {
+        public final OcrJob job;
+
+        public JobFailedException(OcrJob job) {
+            super("OCR job " + job.id + " failed" + (job.error != null ? ": " + job.error : ""));
+            this.job = job;
+        }
     }
 
     /** API error. */
@@ -126,12 +352,19 @@ public class DocScanClient {
         public final int statusCode;
         public final String errorCode;
         public final String requestId;
+        /** Server's Retry-After in ms, or -1 if it sent none. */
+        public final long retryAfterMs;
 
         public ApiException(int statusCode, String errorCode, String message, String requestId) {
+            this(statusCode, errorCode, message, requestId, -1);
+        }
+
+        public ApiException(int statusCode, String errorCode, String message, String requestId, long retryAfterMs) {
             super(message);
             this.statusCode = statusCode;
             this.errorCode = errorCode;
             this.requestId = requestId;
+            this.retryAfterMs = retryAfterMs;
         }
     }
 
@@ -147,108 +380,56 @@ public class DocScanClient {
      * @return          Upload result with document metadata and OCR results
      */
     public UploadResult uploadDocument(String filePath) throws IOException {
-        Path path = Paths.get(filePath);
-        if (!Files.exists(path)) {
-            throw new FileNotFoundException("File not found: " + filePath);
-        }
-
-        String fileName = path.getFileName().toString();
-        String mimeType = Files.probeContentType(path);
-        if (mimeType == null) mimeType = "application/octet-stream";
-
-        // Build multipart/form-data request
-        String boundary = "----DocScanBoundary" + UUID.randomUUID().toString().replace("-", "");
-        URL url = new URL(baseUrl + "/v1/documents");
-        HttpURLConnection conn = createConnection(url, "POST");
-        conn.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-        conn.setDoOutput(true);
-
-        // Write multipart body
-        try (OutputStream out = conn.getOutputStream()) {
-            PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, "UTF-8"), true);
-
-            // File part
-            writer.append("--").append(boundary).append("\r\n");
-            writer.append("Content-Disposition: form-data; name=\"document\"; filename=\"")
-                  .append(fileName).append("\"\r\n");
-            writer.append("Content-Type: ").append(mimeType).append("\r\n");
-            writer.append("\r\n");
-            writer.flush();
-
-            // Stream file bytes
-            Files.copy(path, out);
-            out.flush();
-
-            // End boundary
-            writer.append("\r\n");
-            writer.append("--").append(boundary).append("--\r\n");
-            writer.flush();
-        }
-
-        // Parse response
-        int status = conn.getResponseCode();
-        String responseBody = readResponse(conn);
+        return call(Endpoint.UPLOAD, uploadRequest(filePath), this::parseUpload);
+    }
 
-        if (status != 201 && status != 200) {
-            handleError(status, responseBody);
-        }
+    /**
+     * List all uploaded documents.
+     */
+    public DocumentList listDocuments() throws IOException {
+        return call(Endpoint.LIST, newRequest("GET", "/v1/documents"), this::parseList);
+    }
 
-        JsonObject json = gson.fromJson(responseBody, JsonObject.class);
-        JsonObject doc = json.getAsJsonObject("document");
-        JsonObject classification = doc.getAsJsonObject("classification");
-        JsonObject ocr = doc.getAsJsonObject("ocr");
-
-        UploadResult result = new UploadResult();
-        result.documentId = getStr(doc, "id");
-        result.originalName = getStr(doc, "originalName");
-        result.mimeType = getStr(doc, "mimeType");
-        result.sizeBytes = doc.get("sizeBytes").getAsLong();
-        result.category = getStr(classification, "category");
-        result.ocrApplied = ocr.get("applied").getAsBoolean();
-        result.extractedText = getStrNullable(ocr, "extractedText");
-        result.textFileId = getStrNullable(ocr, "textFileId");
-        result.characterCount = ocr.get("characterCount").getAsInt();
-        result.ocrError = getStrNullable(ocr, "error");
-        result.requestId = getStr(json, "requestId");
+    /**
+     * List one page of documents, newest first.
+     *
+     * @param limit   Maximum documents in the page (the gateway caps it at 1000)
+     * @param cursor  nextCursor of the previous page, or null for the first page
+     * @return        The page; its nextCursor is null on the last page
+     */
+    public DocumentList listDocuments(int limit, String cursor) throws IOException {
+        return call(Endpoint.LIST, pageRequest(limit, cursor), this::parseList);
+    }
 
-        return result;
+    /**
+     * Get the metadata of one document.
+     *
+     * @param documentId  Document ID
+     * @return            Document metadata, or null if it does not exist
+     */
+    public DocumentInfo getDocument(String documentId) throws IOException {
+        return call(Endpoint.INFO, newRequest("GET", "/v1/documents/" + encode(documentId)), this::parseDocument);
     }
 
     /**
-     * List all uploaded documents.
+     * Iterate over all documents, fetching them lazily in pages of pageSize.
+     * The next page is requested in the background while the current one
+     * is consumed. Errors are thrown as UncheckedIOException / ApiException.
      */
-    public DocumentList listDocuments() throws IOException {
-        URL url = new URL(baseUrl + "/v1/documents");
-        HttpURLConnection conn = createConnection(url, "GET");
-
-        int status = conn.getResponseCode();
-        String body = readResponse(conn);
-
-        if (status != 200) handleError(status, body);
-
-        JsonObject json = gson.fromJson(body, JsonObject.class);
-        JsonArray arr = json.getAsJsonArray("documents");
-
-        DocumentList list = new DocumentList();
-        list.count = json.get("count").getAsInt();
-        list.requestId = getStr(json, "requestId");
-        list.documents = new DocumentInfo[arr.size()];
-
-        for (int i = 0; i < arr.size(); i++) {
-            JsonObject d = arr.get(i).getAsJsonObject();
-            JsonObject ocr = d.getAsJsonObject("ocr");
-            DocumentInfo info = new DocumentInfo();
-            info.id = getStr(d, "id");
-            info.mimeType = getStr(d, "mimeType");
-            info.sizeBytes = d.get("sizeBytes").getAsLong();
-            info.isImage = d.get("isImage").getAsBoolean();
-            info.uploadedAt = getStr(d, "uploadedAt");
-            info.hasExtractedText = ocr.get("hasExtractedText").getAsBoolean();
-            info.textFileId = getStrNullable(ocr, "textFileId");
-            list.documents[i] = info;
-        }
+    public Iterator<DocumentInfo> iterateDocuments(int pageSize) {
+        return newPager(pageSize);
+    }
 
-        return list;
+    /**
+     * All documents as a lazy, paged stream (see {@link #iterateDocuments}).
+     * Close the stream, e.g. with try-with-resources, if it is not consumed
+     * to the end, to cancel the outstanding prefetch.
+     */
+    public Stream<DocumentInfo> streamDocuments(int pageSize) {
+        DocumentPager pager = newPager(pageSize);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(pager, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(pager::close);
     }
 
     /**
@@ -258,7 +439,7 @@ public class DocScanClient {
      * @param savePath    Local path to save the downloaded file
      */
     public void downloadOriginal(String documentId, String savePath) throws IOException {
-        downloadFile("/v1/documents/" + encode(documentId) + "/download", savePath);
+        call(Endpoint.DOWNLOAD, newRequest("GET", "/v1/documents/" + encode(documentId) + "/download"), res -> saveFile(res, savePath));
     }
 
     /**
@@ -268,7 +449,7 @@ public class DocScanClient {
      * @param savePath    Local path to save the .txt file
      */
     public void downloadText(String documentId, String savePath) throws IOException {
-        downloadFile("/v1/documents/" + encode(documentId) + "/text", savePath);
+        call(Endpoint.DOWNLOAD, newRequest("GET", "/v1/documents/" + encode(documentId) + "/text"), res -> saveFile(res, savePath));
     }
 
     /**
@@ -278,17 +459,7 @@ public class DocScanClient {
      * @return            Extracted text, or null if no OCR text available
      */
     public String getExtractedText(String documentId) throws IOException {
-        URL url = new URL(baseUrl + "/v1/documents/" + encode(documentId) + "/text/preview");
-        HttpURLConnection conn = createConnection(url, "GET");
-
-        int status = conn.getResponseCode();
-        if (status == 404) return null;
-
-        String body = readResponse(conn);
-        if (status != 200) handleError(status, body);
-
-        JsonObject json = gson.fromJson(body, JsonObject.class);
-        return getStrNullable(json, "text");
+        return call(Endpoint.TEXT, newRequest("GET", "/v1/documents/" + encode(documentId) + "/text/preview"), this::parseText);
     }
 
     /**
@@ -298,69 +469,510 @@ public class DocScanClient {
      * @return            true if deleted successfully
      */
     public boolean deleteDocument(String documentId) throws IOException {
-        URL url = new URL(baseUrl + "/v1/documents/" + encode(documentId));
-        HttpURLConnection conn = createConnection(url, "DELETE");
-
-        int status = conn.getResponseCode();
-        String body = readResponse(conn);
-
-        if (status == 404) return false;
-        if (status != 200) handleError(status, body);
-
-        JsonObject json = gson.fromJson(body, JsonObject.class);
-        return json.get("deleted").getAsBoolean();
+        return call(Endpoint.DELETE, newRequest("DELETE", "/v1/documents/" + encode(documentId)), this::parseDelete);
     }
 
     /**
      * Check gateway health.
      */
     public String healthCheck() throws IOException {
-        URL url = new URL(baseUrl + "/v1/health");
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(5000);
-        conn.setReadTimeout(5000);
-        return readResponse(conn);
+        return call(Endpoint.HEALTH, healthRequest(), DocScanClient::readResponse);
     }
 
-    // ─── Internal Helpers ──────────────────────────────────────────────────
+    // ═══════════════════════════════════════════════════════════════════════
+    // OCR JOBS
+    // ═══════════════════════════════════════════════════════════════════════
+    // submitDocument() returns as soon as the file is stored; OCR runs on the
+    // server in the background. awaitText() long-polls the job (each request
+    // is held by the server until the job finishes, up to 30 s), so waiting
+    // costs one request per 30 s rather than a poll loop.
+
+    /** Longest wait the gateway holds a job status request for. */
+    private static final Duration MAX_JOB_POLL = Duration.ofSeconds(30);
+
+    /**
+     * Upload a document without waiting for OCR.
+     *
+     * @param filePath  Path to the file to upload
+     * @return          The OCR job; its id is also the document id
+     */
+    public OcrJob submitDocument(String filePath) throws IOException {
+        return call(Endpoint.UPLOAD, submitRequest(filePath), this::parseSubmit);
+    }
 
-    private HttpURLConnection createConnection(URL url, String method) throws IOException {
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod(method);
-        conn.setRequestProperty("X-API-Key", apiKey);
-        conn.setRequestProperty("X-Request-Id", UUID.randomUUID().toString());
-        conn.setRequestProperty("Accept", "application/json");
-        conn.setConnectTimeout(timeoutMs);
-        conn.setReadTimeout(timeoutMs);
-        return conn;
+    /** Current status of an OCR job. */
+    public OcrJob getJob(String jobId) throws IOException {
+        return getJob(jobId, Duration.ZERO);
     }
 
-    private void downloadFile(String path, String savePath) throws IOException {
-        URL url = new URL(baseUrl + path);
-        HttpURLConnection conn = createConnection(url, "GET");
+    /**
+     * Status of an OCR job, waiting up to {@code wait} (max 30 s) for it to
+     * finish before the server answers.
+     */
+    public OcrJob getJob(String jobId, Duration wait) throws IOException {
+        return call(Endpoint.JOB, jobRequest(jobId, wait), this::parseJob);
+    }
 
-        int status = conn.getResponseCode();
-        if (status != 200) {
-            String body = readResponse(conn);
-            handleError(status, body);
+    /**
+     * Wait for an OCR job to finish and return the extracted text.
+     *
+     * @param jobId    Job id from {@link #submitDocument(String)}
+     * @param timeout  How long to wait in total
+     * @return         Extracted text, or null if the file type is not OCR'd
+     * @throws JobFailedException  if OCR failed
+     * @throws TimeoutException    if the job is still running after timeout
+     */
+    public String awaitText(String jobId, Duration timeout) throws IOException, TimeoutException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            Duration left = Duration.ofNanos(deadline - System.nanoTime());
+            OcrJob job = getJob(jobId, left.isNegative() ? Duration.ZERO : min(left, MAX_JOB_POLL));
+            if (job.isFinished()) return textOf(job);
+            if (System.nanoTime() - deadline >= 0) {
+                throw new TimeoutException("OCR job " + jobId + " still " + job.status + " after " + timeout);
+            }
         }
+    }
 
-        try (InputStream in = conn.getInputStream()) {
-            Files.copy(in, Paths.get(savePath), StandardCopyOption.REPLACE_EXISTING);
+    /** Async {@link #submitDocument(String)}. */
+    public CompletableFuture<OcrJob> submitDocumentAsync(String filePath) {
+        Request request;
+        try {
+            request = submitRequest(filePath);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
         }
+        return callAsync(Endpoint.UPLOAD, request, this::parseSubmit);
+    }
+
+    /** Async {@link #getJob(String, Duration)}. */
+    public CompletableFuture<OcrJob> getJobAsync(String jobId, Duration wait) {
+        return callAsync(Endpoint.JOB, jobRequest(jobId, wait), this::parseJob);
+    }
+
+    /**
+     * Async {@link #awaitText(String, Duration)}: no thread is held while
+     * the job runs. Completes exceptionally with JobFailedException or
+     * TimeoutException.
+     */
+    public CompletableFuture<String> awaitTextAsync(String jobId, Duration timeout) {
+        return awaitTextAsync(jobId, System.nanoTime() + timeout.toNanos(), timeout);
+    }
+
+    private CompletableFuture<String> awaitTextAsync(String jobId, long deadline, Duration timeout) {
+        Duration left = Duration.ofNanos(deadline - System.nanoTime());
+        return getJobAsync(jobId, left.isNegative() ? Duration.ZERO : min(left, MAX_JOB_POLL))
+            .thenCompose(job -> {
+                if (job.isFinished()) {
+                    if ("failed".equals(job.status)) return CompletableFuture.failedFuture(new JobFailedException(job));
+                    if (job.textFileId == null) return CompletableFuture.completedFuture(null);
+                    return getExtractedTextAsync(job.documentId);
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    return CompletableFuture.failedFuture(
+                        new TimeoutException("OCR job " + jobId + " still " + job.status + " after " + timeout));
+                }
+                return awaitTextAsync(jobId, deadline, timeout);
+            });
+    }
+
+    private String textOf(OcrJob job) throws IOException {
+        if ("failed".equals(job.status)) throw new JobFailedException(job);
+        return job.textFileId != null ? getExtractedText(job.documentId) : null;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
     }
 
-    private String readResponse(HttpURLConnection conn) throws IOException {
-        InputStream stream;
+    // ═══════════════════════════════════════════════════════════════════════
+    // ASYNC API METHODS
+    // ═══════════════════════════════════════════════════════════════════════
+    // Non-blocking variants of the methods above. No thread is parked while
+    // the server works (e.g. during OCR); responses are decoded on the
+    // client's executor (see setExecutor). Futures complete exceptionally
+    // with the same IOException / ApiException the blocking call would throw.
+
+    /** Async {@link #uploadDocument(String)}. */
+    public CompletableFuture<UploadResult> uploadDocumentAsync(String filePath) {
+        Request request;
         try {
-            stream = conn.getInputStream();
+            request = uploadRequest(filePath);
         } catch (IOException e) {
-            stream = conn.getErrorStream();
+            return CompletableFuture.failedFuture(e);
+        }
+        return callAsync(Endpoint.UPLOAD, request, this::parseUpload);
+    }
+
+    /** Async {@link #listDocuments()}. */
+    public CompletableFuture<DocumentList> listDocumentsAsync() {
+        return callAsync(Endpoint.LIST, newRequest("GET", "/v1/documents"), this::parseList);
+    }
+
+    /** Async {@link #listDocuments(int, String)}. */
+    public CompletableFuture<DocumentList> listDocumentsAsync(int limit, String cursor) {
+        return callAsync(Endpoint.LIST, pageRequest(limit, cursor), this::parseList);
+    }
+
+    /** Async {@link #getDocument(String)}. */
+    public CompletableFuture<DocumentInfo> getDocumentAsync(String documentId) {
+        return callAsync(Endpoint.INFO, newRequest("GET", "/v1/documents/" + encode(documentId)), this::parseDocument);
+    }
+
+    /** Async {@link #downloadOriginal(String, String)}. */
+    public CompletableFuture<Void> downloadOriginalAsync(String documentId, String savePath) {
+        return callAsync(Endpoint.DOWNLOAD, newRequest("GET", "/v1/documents/" + encode(documentId) + "/download"), res -> saveFile(res, savePath));
+    }
+
+    /** Async {@link #downloadText(String, String)}. */
+    public CompletableFuture<Void> downloadTextAsync(String documentId, String savePath) {
+        return callAsync(Endpoint.DOWNLOAD, newRequest("GET", "/v1/documents/" + encode(documentId) + "/text"), res -> saveFile(res, savePath));
+    }
+
+    /** Async {@link #getExtractedText(String)}. */
+    public CompletableFuture<String> getExtractedTextAsync(String documentId) {
+        return callAsync(Endpoint.TEXT, newRequest("GET", "/v1/documents/" + encode(documentId) + "/text/preview"), this::parseText);
+    }
+
+    /** Async {@link #deleteDocument(String)}. */
+    public CompletableFuture<Boolean> deleteDocumentAsync(String documentId) {
+        return callAsync(Endpoint.DELETE, newRequest("DELETE", "/v1/documents/" + encode(documentId)), this::parseDelete);
+    }
+
+    // ─── Request Execution ─────────────────────────────────────────────────
+
+    /** Decodes a response into a result; runs while the response is open. */
+    @FunctionalInterface
+    private interface ResponseHandler<T> {
+        T handle(Response res) throws IOException;
+    }
+
+    private <T> T call(Endpoint endpoint, Request request, ResponseHandler<T> handler) throws IOException {
+        RetryPolicy.Attempts attempts = retryPolicy.start(request.method());
+        while (true) {
+            try {
+                return attempt(endpoint, request, handler);
+            } catch (IOException | ApiException e) {
+                long delayMs = attempts.nextDelayMillis(e);
+                if (delayMs < 0) throw e;
+                RequestMetrics.retry(metricsListener, endpoint, e, delayMs);
+                sleepBeforeRetry(delayMs);
+            }
+        }
+    }
+
+    private <T> T attempt(Endpoint endpoint, Request request, ResponseHandler<T> handler) throws IOException {
+        CircuitBreaker breaker = breakerFor(endpoint);
+        long permit = breaker != null ? breaker.tryAcquire() : CircuitBreaker.REJECTED;
+        if (breaker != null && permit == CircuitBreaker.REJECTED) {
+            throw new CircuitOpenException(breaker.name(), breaker.lastReason());
+        }
+        try {
+            T result = exchange(endpoint, request, handler);
+            recordOutcome(breaker, permit, result, null);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            recordOutcome(breaker, permit, null, e);
+            throw e;
+        }
+    }
+
+    private <T> T exchange(Endpoint endpoint, Request request, ResponseHandler<T> handler) throws IOException {
+        AdaptiveRateLimiter limiter = endpoint.rateLimited ? rateLimiter : null;
+        if (limiter != null) limiter.acquire();
+
+        RequestMetrics metrics = RequestMetrics.create(metricsListener, endpoint, request);
+        CallTrace trace = JFR_AVAILABLE ? CallTrace.create(endpoint, request) : null;
+        if (metrics != null) metrics.start();
+        if (trace != null) trace.start();
+        Response received;
+        try {
+            received = transport.execute(trace != null ? trace.request() : request);
+        } catch (IOException | RuntimeException e) {
+            if (limiter != null) limiter.onFailure();
+            finished(metrics, trace, null, e);
+            throw e;
+        }
+        try (Response res = observe(received, metrics, trace)) {
+            if (limiter != null) limiter.onResponse(res.statusCode(), res);
+            T result = handler.handle(res);
+            finished(metrics, trace, result, null);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            finished(metrics, trace, null, e);
+            throw e;
+        }
+    }
+
+    /** The response with its body counted for the metrics listener and the JFR trace. */
+    private static Response observe(Response res, RequestMetrics metrics, CallTrace trace) {
+        if (trace != null) res = trace.responded(res);
+        return metrics != null ? metrics.received(res) : res;
+    }
+
+    private static void finished(RequestMetrics metrics, CallTrace trace, Object result, Throwable error) {
+        if (metrics != null) metrics.end(error);
+        if (trace != null) trace.finish(result);
+    }
+
+    private CircuitBreaker breakerFor(Endpoint endpoint) {
+        CircuitBreakers breakers = circuitBreakers;
+        return breakers != null ? breakers.forEndpoint(endpoint) : null;
+    }
+
+    private <T> CompletableFuture<T> callAsync(Endpoint endpoint, Request request, ResponseHandler<T> handler) {
+        Executor exec = executor;
+        RetryPolicy.Attempts attempts = retryPolicy.start(request.method());
+        return retryAsync(endpoint, attempts, exec, () -> attemptAsync(endpoint, request, handler, exec));
+    }
+
+    private <T> CompletableFuture<T> retryAsync(Endpoint endpoint, RetryPolicy.Attempts attempts, Executor exec,
+                                                Supplier<CompletableFuture<T>> attempt) {
+        return attempt.get().handle((value, err) -> {
+            if (err == null) return CompletableFuture.completedFuture(value);
+
+            Throwable cause = unwrap(err);
+            long delayMs = attempts.nextDelayMillis(cause);
+            if (delayMs < 0) return CompletableFuture.<T>failedFuture(cause);
+            RequestMetrics.retry(metricsListener, endpoint, cause, delayMs);
+
+            Executor delayed = CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS, exec);
+            return CompletableFuture.supplyAsync(() -> null, delayed)
+                .thenCompose(ignored -> retryAsync(endpoint, attempts, exec, attempt));
+        }).thenCompose(f -> f);
+    }
+
+    private <T> CompletableFuture<T> attemptAsync(Endpoint endpoint, Request request, ResponseHandler<T> handler,
+                                                  Executor exec) {
+        CircuitBreaker breaker = breakerFor(endpoint);
+        long permit = breaker != null ? breaker.tryAcquire() : CircuitBreaker.REJECTED;
+        if (breaker != null && permit == CircuitBreaker.REJECTED) {
+            return CompletableFuture.failedFuture(new CircuitOpenException(breaker.name(), breaker.lastReason()));
+        }
+        return exchangeAsync(endpoint, request, handler, exec)
+            .whenComplete((result, err) -> recordOutcome(breaker, permit, result, err != null ? unwrap(err) : null));
+    }
+
+    private <T> CompletableFuture<T> exchangeAsync(Endpoint endpoint, Request request, ResponseHandler<T> handler,
+                                                   Executor exec) {
+        AdaptiveRateLimiter limiter = endpoint.rateLimited ? rateLimiter : null;
+        CompletableFuture<Void> permit = limiter != null ? limiter.acquireAsync() : CompletableFuture.completedFuture(null);
+        RequestMetrics metrics = RequestMetrics.create(metricsListener, endpoint, request);
+        CallTrace trace = JFR_AVAILABLE ? CallTrace.create(endpoint, request) : null;
+
+        return permit
+            .thenCompose(ignored -> {
+                if (metrics != null) metrics.start();
+                if (trace != null) trace.start();
+                return transport.executeAsync(trace != null ? trace.request() : request, exec);
+            })
+            .whenComplete((res, err) -> {
+                if (err != null && limiter != null) limiter.onFailure();
+                if (err != null) finished(metrics, trace, null, unwrap(err));
+            })
+            .thenApplyAsync(received -> {
+                try (Response res = observe(received, metrics, trace)) {
+                    if (limiter != null) limiter.onResponse(res.statusCode(), res);
+                    T result = handler.handle(res);
+                    finished(metrics, trace, result, null);
+                    return result;
+                } catch (IOException e) {
+                    finished(metrics, trace, null, e);
+                    throw new CompletionException(e);
+                } catch (RuntimeException e) {
+                    finished(metrics, trace, null, e);
+                    throw e;
+                }
+            }, exec);
+    }
+
+    private void probeHealth() {
+        CircuitBreakers breakers = circuitBreakers;
+        if (breakers == null) return;
+        try {
+            // Single attempt: the probe runs again soon, and retries would only delay detection
+            String body = attempt(Endpoint.HEALTH, healthRequest(), DocScanClient::readResponse);
+            JsonObject json = gson.fromJson(body, JsonObject.class);
+            breakers.onHealthReport(json != null ? json : new JsonObject());
+        } catch (IOException | RuntimeException e) {
+            breakers.onHealthUnreachable(e.getMessage());
+        }
+    }
+
+    /**
+     * Feed a call outcome to its breaker. Connection failures, timeouts, 5xx
+     * responses and uploads that came back with an OCR error count against
+     * the service; 4xx responses show it is up.
+     */
+    private static void recordOutcome(CircuitBreaker breaker, long permit, Object result, Throwable failure) {
+        if (breaker == null) return;
+        if (failure == null) {
+            if (result instanceof UploadResult && ((UploadResult) result).ocrError != null) {
+                breaker.onFailure(permit, "OCR error: " + ((UploadResult) result).ocrError);
+            } else {
+                breaker.onSuccess(permit);
+            }
+        } else if (failure instanceof ApiException) {
+            int status = ((ApiException) failure).statusCode;
+            if (status >= 500) {
+                breaker.onFailure(permit, "HTTP " + status);
+            } else {
+                breaker.onSuccess(permit);
+            }
+        } else if (failure instanceof InterruptedIOException && !(failure instanceof SocketTimeoutException)) {
+            breaker.onIgnored(permit);
+        } else if (failure instanceof IOException) {
+            breaker.onFailure(permit, failure.toString());
+        } else {
+            breaker.onIgnored(permit);
+        }
+    }
+
+    private static Throwable unwrap(Throwable err) {
+        return err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+    }
+
+    private static void sleepBeforeRetry(long delayMs) throws InterruptedIOException {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to retry");
+        }
+    }
+
+    // ─── Requests & Response Parsing ───────────────────────────────────────
+
+    private Request uploadRequest(String filePath) throws IOException {
+        return uploadRequest(filePath, "/v1/documents");
+    }
+
+    private Request uploadRequest(String filePath, String apiPath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            throw new FileNotFoundException("File not found: " + filePath);
+        }
+
+        String fileName = path.getFileName().toString();
+        String mimeType = Files.probeContentType(path);
+        if (mimeType == null) mimeType = "application/octet-stream";
+
+        // Build multipart/form-data request
+        String boundary = "----DocScanBoundary" + UUID.randomUUID().toString().replace("-", "");
+        return newRequest("POST", apiPath)
+            .body(new MultipartBody(boundary, path, Files.size(path), fileName, mimeType));
+    }
+
+    private Request submitRequest(String filePath) throws IOException {
+        return uploadRequest(filePath, "/v1/documents?async=true")
+            .header("Prefer", "respond-async");
+    }
+
+    private Request jobRequest(String jobId, Duration wait) {
+        long waitMs = Math.min(Math.max(wait.toMillis(), 0), MAX_JOB_POLL.toMillis());
+        String query = waitMs > 0 ? "?wait=" + BigDecimal.valueOf(waitMs, 3).stripTrailingZeros().toPlainString() : "";
+        return newRequest("GET", "/v1/jobs/" + encode(jobId) + query)
+            .timeout(Duration.ofMillis(timeoutMs + waitMs));
+    }
+
+    private Request pageRequest(int limit, String cursor) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be >= 1");
+        String path = "/v1/documents?limit=" + limit;
+        if (cursor != null) path += "&cursor=" + encode(cursor);
+        return newRequest("GET", path);
+    }
+
+    private DocumentPager newPager(int pageSize) {
+        if (pageSize < 1) throw new IllegalArgumentException("pageSize must be >= 1");
+        return new DocumentPager(cursor -> listDocumentsAsync(pageSize, cursor));
+    }
+
+    private UploadResult parseUpload(Response res) throws IOException {
+        int status = res.statusCode();
+        if (status != 201 && status != 200) {
+            handleError(res, readResponse(res));
+        }
+        UploadResult result = ResponseDecoder.decodeUpload(res.body());
+        result.timings = ResponseDecoder.decodeServerTiming(res.headers().get("Server-Timing"));
+        return result;
+    }
+
+    private DocumentList parseList(Response res) throws IOException {
+        if (res.statusCode() != 200) handleError(res, readResponse(res));
+        return ResponseDecoder.decodeList(res.body());
+    }
+
+    private OcrJob parseSubmit(Response res) throws IOException {
+        int status = res.statusCode();
+        if (status == 202) return ResponseDecoder.decodeJob(res.body());
+
+        // A gateway without async support ran OCR inline; report it as a finished job
+        UploadResult result = parseUpload(res);
+        OcrJob job = new OcrJob();
+        job.id = result.documentId;
+        job.documentId = result.documentId;
+        job.status = result.ocrError != null ? "failed" : result.ocrApplied ? "done" : "skipped";
+        job.textFileId = result.textFileId;
+        job.characterCount = result.characterCount;
+        job.error = result.ocrError;
+        job.requestId = result.requestId;
+        return job;
+    }
+
+    private OcrJob parseJob(Response res) throws IOException {
+        if (res.statusCode() != 200) handleError(res, readResponse(res));
+        return ResponseDecoder.decodeJob(res.body());
+    }
+
+    private DocumentInfo parseDocument(Response res) throws IOException {
+        int status = res.statusCode();
+        if (status == 404) return null;
+        if (status != 200) handleError(res, readResponse(res));
+        return ResponseDecoder.decodeDocument(res.body());
+    }
+
+    private String parseText(Response res) throws IOException {
+        int status = res.statusCode();
+        if (status == 404) return null;
+        if (status != 200) handleError(res, readResponse(res));
+        return ResponseDecoder.decodeText(res.body());
+    }
+
+    private Boolean parseDelete(Response res) throws IOException {
+        int status = res.statusCode();
+        if (status == 404) return false;
+        if (status != 200) handleError(res, readResponse(res));
+        return ResponseDecoder.decodeDeleted(res.body());
+    }
+
+    private Void saveFile(Response res, String savePath) throws IOException {
+        int status = res.statusCode();
+        if (status != 200) {
+            String body = readResponse(res);
+            handleError(res, body);
         }
-        if (stream == null) return "";
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"))) {
+        Files.copy(res.body(), Paths.get(savePath), StandardCopyOption.REPLACE_EXISTING);
+        return null;
+    }
+
+    // ─── Internal Helpers ──────────────────────────────────────────────────
+
+    private Request healthRequest() {
+        return new Request("GET", URI.create(baseUrl + "/v1/health"))
+            .timeout(Duration.ofMillis(5000));
+    }
+
+    private Request newRequest(String method, String path) {
+        return new Request(method, URI.create(baseUrl + path))
+            .header("X-API-Key", apiKey)
+            .header("X-Request-Id", UUID.randomUUID().toString())
+            .header("Accept", "application/json")
+            .timeout(Duration.ofMillis(timeoutMs));
+    }
+
+    static String readResponse(Response res) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(res.body(), StandardCharsets.UTF_8))) {
             StringBuilder sb = new StringBuilder();
             String line;
             while ((line = reader.readLine()) != null) {
@@ -370,7 +982,9 @@ public class DocScanClient {
         }
     }
 
-    private void handleError(int status, String body) {
+    private void handleError(Response res, String body) {
+        int status = res.statusCode();
+        long retryAfterMs = RetryPolicy.parseRetryAfterMillis(res.header("Retry-After"));
         try {
             JsonObject json = gson.fromJson(body, JsonObject.class);
             JsonObject error = json.getAsJsonObject("error");
@@ -378,12 +992,13 @@ public class DocScanClient {
                 status,
                 getStr(error, "code"),
                 getStr(error, "message"),
-                getStrNullable(error, "requestId")
+                getStrNullable(error, "requestId"),
+                retryAfterMs
             );
         } catch (ApiException e) {
             throw e;
         } catch (Exception e) {
-            throw new ApiException(status, "UNKNOWN", body, null);
+            throw new ApiException(status, "UNKNOWN", body, null, retryAfterMs);
         }
     }
 
@@ -395,7 +1010,7 @@ public class DocScanClient {
         return obj.has(key) && !obj.get(key).isJsonNull() ? obj.get(key).getAsString() : null;
     }
 
-    private static String encode(String s) {
+    static String encode(String s) {
         try {
             return java.net.URLEncoder.encode(s, "UTF-8");
         } catch (Exception e) {
@@ -414,6 +1029,17 @@ public class DocScanClient {
         String apiKey = System.getenv("DOCSCAN_API_KEY") != null
             ? System.getenv("DOCSCAN_API_KEY") : "docupload-dev-key-change-me";
 
+        // ── Load mode ──
+        if (args.length > 0 && args[0].equals("load")) {
+            try {
+                LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length), gatewayUrl, apiKey);
+            } catch (Exception e) {
+                System.err.println("Error: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
         DocScanClient client = new DocScanClient(gatewayUrl, apiKey);
 
         System.out.println("═══════════════════════════════════════════════");
@@ -457,6 +1083,7 @@ public class DocScanClient {
             } else {
                 System.out.println("\n[2] Skipping upload (pass a file path as argument)");
                 System.out.println("    Usage: java -jar docupload-client.jar /path/to/file.jpg");
+                System.out.println("           java -jar docupload-client.jar load <corpus-dir> --rate <ops/s>");
             }
 
             // ── List Documents ──
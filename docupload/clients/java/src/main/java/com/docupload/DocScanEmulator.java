@@ -0,0 +1,1190 @@
+package com.docupload;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * ═══════════════════════════════════════════════════════════════════════════
+ * DocScan Emulator
+ * ═══════════════════════════════════════════════════════════════════════════
+ * In-process stand-in for the DocScan gateway, for load-testing client code
+ * on one machine without Docker or Tesseract. Serves the /v1 API described
+ * in gateway/openapi.yaml — upload (sync and async), jobs with long-poll,
+ * paginated and filtered listing, metadata, download, text, preview,
+ * delete and health — with the same JSON shapes, error envelope, API-key
+ * auth and rate-limit headers.
+ *
+ * Documents live in memory, or in a directory when one is given. Requests
+ * are served on virtual threads on Java 21+ (platform threads before).
+ * Server behaviour is configurable at any time, also mid-run:
+ *
+ *   setOcrLatency       simulated OCR time: base + per MB of input
+ *   setOcrCapacity      OCR slots; further OCR waits for a free one
+ *   setOcrFailureRate   fraction of OCR runs reporting an error
+ *   setErrorRate        fraction of requests answered 500 INTERNAL_ERROR
+ *   setUnavailableRate  fraction answered 503 BACKEND_UNAVAILABLE
+ *   setRateLimit        fixed-window limit per API key (429 beyond it)
+ *   setBandwidth        bytes/s per request, each direction
+ *
+ * Injected faults are drawn from seeded sequences (setSeed), one for
+ * request faults and one for OCR failures: the k-th request and the k-th
+ * OCR run get the same draw in every run, so N requests (N OCR runs) see
+ * the same number of faults whatever the thread interleaving. Which
+ * request gets a fault still depends on arrival order. Uploads carry a
+ * Server-Timing header with the stages the emulator has: api-receive,
+ * ocr-total (OCR slot wait plus simulated OCR) and gw-total.
+ *
+ * Usage:
+ *   try (DocScanEmulator emulator = new DocScanEmulator(0).start()) {
+ *       emulator.setOcrLatency(Duration.ofMillis(200), Duration.ofMillis(50));
+ *       emulator.setRateLimit(100, Duration.ofMinutes(1));
+ *       DocScanClient client = new DocScanClient(emulator.baseUrl(), emulator.apiKey());
+ *       ...
+ *       System.out.println(emulator.stats());
+ *   }
+ *
+ * Or standalone:  java -cp docupload-client.jar:gson.jar com.docupload.DocScanEmulator 4000
+ * ═══════════════════════════════════════════════════════════════════════════
+ */
+public class DocScanEmulator implements AutoCloseable {
+
+    public static final String DEFAULT_API_KEY = "docupload-dev-key-change-me";
+
+    private static final int MAX_PAGE = 1000;
+    private static final long MB = 1024 * 1024;
+    private static final int IO_CHUNK = 16 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Path storageDir;
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+
+    // ─── Store ───
+    private final Map<String, Doc> documents = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Doc> bySeq = new ConcurrentSkipListMap<>();
+    private final AtomicLong seq = new AtomicLong();
+    private final AtomicLong lastTimestamp = new AtomicLong();
+
+    // ─── Behaviour (changeable at any time) ───
+    private volatile String apiKey = DEFAULT_API_KEY;
+    private volatile long ocrBaseNanos;
+    private volatile long ocrPerMbNanos;
+    private volatile Semaphore ocrSlots;
+    private volatile double ocrFailureRate;
+    private volatile double errorRate;
+    private volatile double unavailableRate;
+    private volatile int rateLimitMax;
+    private volatile long rateLimitWindowMs = 60_000;
+    private volatile long bandwidth;
+    private volatile int ocrTextChars = 512;
+    private volatile long maxUploadBytes = 50 * MB;
+    private volatile long seed = 42;
+    private final AtomicLong faultDraws = new AtomicLong();
+    private final AtomicLong ocrDraws = new AtomicLong();
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    // ─── Counters ───
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder uploads = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+    private final LongAdder ocrRuns = new LongAdder();
+
+    /**
+     * Emulator on a loopback port with documents kept in memory.
+     *
+     * @param port  Port to listen on; 0 picks a free one (see {@link #baseUrl()})
+     */
+    public DocScanEmulator(int port) throws IOException {
+        this(port, null);
+    }
+
+    /**
+     * @param port        Port to listen on; 0 picks a free one
+     * @param storageDir  Directory for uploaded files, or null to keep them in memory
+     */
+    public DocScanEmulator(int port, Path storageDir) throws IOException {
+        if (storageDir != null) Files.createDirectories(storageDir);
+        this.storageDir = storageDir;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        this.executor = VirtualThreads.newTaskExecutor("docscan-emulator");
+        server.setExecutor(executor);
+        server.createContext("/v1/", this::handle);
+    }
+
+    public DocScanEmulator start() {
+        server.start();
+        return this;
+    }
+
+    /** Base URL to give the client, e.g. "http://127.0.0.1:54321". */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public String apiKey() {
+        return apiKey;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // ─── Configuration ─────────────────────────────────────────────────────
+
+    public void setApiKey(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    /** Simulated OCR time: base + perMb for each MB of the uploaded file. */
+    public void setOcrLatency(Duration base, Duration perMb) {
+        this.ocrBaseNanos = base.toNanos();
+        this.ocrPerMbNanos = perMb.toNanos();
+    }
+
+    /** OCR runs at once; more wait for a slot, as behind a busy OCR service. 0 = unlimited. */
+    public void setOcrCapacity(int slots) {
+        this.ocrSlots = slots > 0 ? new Semaphore(slots, true) : null;
+    }
+
+    /** Fraction (0-1) of OCR runs that report an error instead of text. */
+    public void setOcrFailureRate(double rate) {
+        this.ocrFailureRate = rate;
+    }
+
+    /** Fraction (0-1) of authenticated requests answered 500 INTERNAL_ERROR. */
+    public void setErrorRate(double rate) {
+        this.errorRate = rate;
+    }
+
+    /** Fraction (0-1) of authenticated requests answered 503 BACKEND_UNAVAILABLE (retryable). */
+    public void setUnavailableRate(double rate) {
+        this.unavailableRate = rate;
+    }
+
+    /** At most maxRequests per window and API key, like the gateway; 0 disables. */
+    public void setRateLimit(int maxRequests, Duration window) {
+        this.rateLimitWindowMs = window.toMillis();
+        this.rateLimitMax = maxRequests;
+        windows.clear();
+    }
+
+    /** Bytes per second for each request body and each response body; 0 = unthrottled. */
+    public void setBandwidth(long bytesPerSecond) {
+        this.bandwidth = bytesPerSecond;
+    }
+
+    /** Length of the emulated extracted text. */
+    public void setOcrTextChars(int chars) {
+        this.ocrTextChars = chars;
+    }
+
+    public void setMaxUploadBytes(long maxUploadBytes) {
+        this.maxUploadBytes = maxUploadBytes;
+    }
+
+    /** Seed of the sequences behind injected faults; restarts both. */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        faultDraws.set(0);
+        ocrDraws.set(0);
+    }
+
+    // ─── Stats ─────────────────────────────────────────────────────────────
+
+    /** Counters since start. */
+    public static class Stats {
+        public long requests;
+        public long uploads;
+        public long bytesReceived;
+        public long bytesSent;
+        public long rateLimited;
+        public long injectedErrors;
+        public long ocrRuns;
+        public int documents;
+
+        @Override
+        public String toString() {
+            return String.format(
+                "EmulatorStats{requests=%d, uploads=%d, in=%d B, out=%d B, 429s=%d, injectedErrors=%d, ocrRuns=%d, documents=%d}",
+                requests, uploads, bytesReceived, bytesSent, rateLimited, injectedErrors, ocrRuns, documents
+            );
+        }
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.requests = requests.sum();
+        s.uploads = uploads.sum();
+        s.bytesReceived = bytesReceived.sum();
+        s.bytesSent = bytesSent.sum();
+        s.rateLimited = rateLimited.sum();
+        s.injectedErrors = injectedErrors.sum();
+        s.ocrRuns = ocrRuns.sum();
+        s.documents = documents.size();
+        return s;
+    }
+
+    // ─── Routing ───────────────────────────────────────────────────────────
+
+    private void handle(HttpExchange ex) throws IOException {
+        requests.increment();
+        String requestId = ex.getRequestHeaders().getFirst("X-Request-Id");
+        if (requestId == null) requestId = UUID.randomUUID().toString();
+        ex.getResponseHeaders().set("X-Request-Id", requestId);
+
+        try {
+            String method = ex.getRequestMethod();
+            String[] parts = pathSegments(ex);   // ["v1", ...]
+
+            if (!applyRateLimit(ex, requestId)) return;
+
+            if (parts.length == 2 && parts[1].equals("health") && method.equals("GET")) {
+                health(ex, requestId);
+                return;
+            }
+            if (!authenticate(ex, requestId)) return;
+            if (!injectFault(ex, requestId)) return;
+
+            if (parts.length == 2 && parts[1].equals("documents")) {
+                if (method.equals("POST")) upload(ex, requestId);
+                else if (method.equals("GET")) list(ex, requestId);
+                else error(ex, 405, "METHOD_NOT_ALLOWED", "Method not allowed.", requestId);
+            } else if (parts.length == 3 && parts[1].equals("documents")) {
+                if (method.equals("GET")) document(ex, parts[2], requestId);
+                else if (method.equals("DELETE")) delete(ex, parts[2], requestId);
+                else error(ex, 405, "METHOD_NOT_ALLOWED", "Method not allowed.", requestId);
+            } else if (parts.length == 4 && parts[1].equals("documents") && parts[3].equals("download")) {
+                download(ex, parts[2], requestId);
+            } else if (parts.length == 4 && parts[1].equals("documents") && parts[3].equals("text")) {
+                text(ex, parts[2], requestId);
+            } else if (parts.length == 5 && parts[1].equals("documents") && parts[3].equals("text")
+                    && parts[4].equals("preview")) {
+                preview(ex, parts[2], requestId);
+            } else if (parts.length == 3 && parts[1].equals("jobs")) {
+                job(ex, parts[2], requestId);
+            } else {
+                error(ex, 404, "NOT_FOUND", "No such endpoint.", requestId);
+            }
+        } catch (InterruptedIOException e) {
+            // Emulator shutting down
+        } catch (IOException e) {
+            // Client went away mid-exchange
+        } catch (RuntimeException e) {
+            error(ex, 500, "INTERNAL_ERROR", e.toString(), requestId);
+        } finally {
+            ex.close();
+        }
+    }
+
+    private static String[] pathSegments(HttpExchange ex) {
+        String[] raw = ex.getRequestURI().getRawPath().replaceAll("^/+|/+$", "").split("/");
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = URLDecoder.decode(raw[i].replace("+", "%2B"), StandardCharsets.UTF_8);
+        }
+        return raw;
+    }
+
+    private boolean authenticate(HttpExchange ex, String requestId) throws IOException {
+        String key = ex.getRequestHeaders().getFirst("X-API-Key");
+        if (key == null) {
+            error(ex, 401, "MISSING_API_KEY", "X-API-Key header is required. See /v1/docs for API documentation.", requestId);
+            return false;
+        }
+        if (!key.equals(apiKey)) {
+            error(ex, 403, "INVALID_API_KEY", "The provided API key is not valid.", requestId);
+            return false;
+        }
+        return true;
+    }
+
+    /** Fixed window per API key (or client address), with the gateway's headers. */
+    private boolean applyRateLimit(HttpExchange ex, String requestId) throws IOException {
+        int max = rateLimitMax;
+        if (max <= 0) return true;
+
+        String key = ex.getRequestHeaders().getFirst("X-API-Key");
+        if (key == null) key = ex.getRemoteAddress().getAddress().getHostAddress();
+        long windowMs = rateLimitWindowMs;
+        long now = System.currentTimeMillis();
+        Window w = windows.computeIfAbsent(key, k -> new Window());
+
+        long resetAt;
+        int used;
+        synchronized (w) {
+            if (now >= w.startMs + windowMs) {
+                w.startMs = now;
+                w.count = 0;
+            }
+            used = ++w.count;
+            resetAt = w.startMs + windowMs;
+        }
+
+        long resetSeconds = Math.max(0, (resetAt - now + 999) / 1000);
+        int remaining = Math.max(0, max - used);
+        ex.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(max));
+        ex.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(remaining));
+        ex.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf((resetAt + 999) / 1000));
+        ex.getResponseHeaders().set("RateLimit-Limit", String.valueOf(max));
+        ex.getResponseHeaders().set("RateLimit-Remaining", String.valueOf(remaining));
+        ex.getResponseHeaders().set("RateLimit-Reset", String.valueOf(resetSeconds));
+
+        if (used <= max) return true;
+        rateLimited.increment();
+        ex.getResponseHeaders().set("Retry-After", String.valueOf(resetSeconds));
+        error(ex, 429, "RATE_LIMIT_EXCEEDED",
+            "Too many requests. Limit: " + max + " per " + windowMs / 1000 + "s window.", requestId);
+        return false;
+    }
+
+    private boolean injectFault(HttpExchange ex, String requestId) throws IOException {
+        double roll = draw(FAULT_STREAM, faultDraws.incrementAndGet());
+        if (roll < unavailableRate) {
+            injectedErrors.increment();
+            ex.getResponseHeaders().set("Retry-After", "1");
+            error(ex, 503, "BACKEND_UNAVAILABLE", "Backend service is unavailable.", requestId);
+            return false;
+        }
+        if (roll < unavailableRate + errorRate) {
+            injectedErrors.increment();
+            error(ex, 500, "INTERNAL_ERROR", "An unexpected error occurred.", requestId);
+            return false;
+        }
+        return true;
+    }
+
+    private static final long FAULT_STREAM = 0;
+    private static final long OCR_STREAM = 1;
+
+    /**
+     * The n-th draw of a stream under the current seed, uniform in [0, 1).
+     * A pure function of (seed, stream, n) — SplitMix64's finalizer — so
+     * concurrent requests cannot shift each other's draws.
+     */
+    private double draw(long stream, long n) {
+        long z = seed + 0x9E3779B97F4A7C15L * (2 * n + stream);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    // ─── Endpoints ─────────────────────────────────────────────────────────
+
+    private void health(HttpExchange ex, String requestId) throws IOException {
+        JsonObject gateway = new JsonObject();
+        gateway.addProperty("version", "emulator");
+        gateway.addProperty("timestamp", Instant.now().toString());
+        JsonObject ocr = new JsonObject();
+        ocr.addProperty("status", "ok");
+        JsonObject backend = new JsonObject();
+        backend.addProperty("status", "ok");
+        backend.add("ocr", ocr);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("status", "ok");
+        body.add("gateway", gateway);
+        body.add("backend", backend);
+        body.addProperty("requestId", requestId);
+        json(ex, 200, body);
+    }
+
+    private void upload(HttpExchange ex, String requestId) throws IOException {
+        long startNanos = System.nanoTime();
+        String contentType = ex.getRequestHeaders().getFirst("Content-Type");
+        String boundary = boundaryOf(contentType);
+        if (boundary == null) {
+            error(ex, 400, "NO_FILE", "Request must include a 'document' field with a file.", requestId);
+            return;
+        }
+
+        Doc doc;
+        try (InputStream in = throttle(ex.getRequestBody(), bytesReceived)) {
+            doc = receiveDocument(in, boundary);
+        } catch (UploadTooLargeException e) {
+            ex.getResponseHeaders().set("Connection", "close");
+            error(ex, 413, "FILE_TOO_LARGE", "File exceeds the " + maxUploadBytes / MB + " MB limit.", requestId);
+            return;
+        } catch (MalformedUploadException e) {
+            error(ex, 400, "NO_FILE", e.getMessage(), requestId);
+            return;
+        }
+        if (doc == null) {
+            error(ex, 400, "NO_FILE", "Request must include a 'document' field with a file.", requestId);
+            return;
+        }
+        uploads.increment();
+        documents.put(doc.id, doc);
+        bySeq.put(doc.seq, doc);
+        String timing = timingMetric("api-receive", System.nanoTime() - startNanos);
+
+        String prefer = ex.getRequestHeaders().getFirst("Prefer");
+        boolean async = "true".equals(queryParams(ex).get("async"))
+            || (prefer != null && prefer.contains("respond-async"));
+
+        if (async) {
+            Job job = new Job(doc.id);
+            doc.job = job;
+            if (doc.isOcrType()) {
+                executor.execute(() -> runJob(doc, job));
+            } else {
+                job.status = "skipped";
+                job.finishedAt = job.createdAt;
+                job.finished.complete(null);
+            }
+            JsonObject body = new JsonObject();
+            body.add("document", uploadView(doc, null));
+            body.add("job", jobView(job));
+            body.addProperty("requestId", requestId);
+            ex.getResponseHeaders().set("Location", "/v1/jobs/" + encode(doc.id));
+            ex.getResponseHeaders().set("Server-Timing",
+                timing + ", " + timingMetric("gw-total", System.nanoTime() - startNanos));
+            json(ex, 202, body);
+            return;
+        }
+
+        String ocrError = null;
+        if (doc.isOcrType()) {
+            long ocrStart = System.nanoTime();
+            try {
+                ocrError = runOcr(doc);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Emulator shutting down");
+            }
+            timing = timingMetric("ocr-total", System.nanoTime() - ocrStart) + ", " + timing;
+        }
+        JsonObject body = new JsonObject();
+        body.add("document", uploadView(doc, ocrError));
+        body.addProperty("requestId", requestId);
+        ex.getResponseHeaders().set("Server-Timing",
+            timing + ", " + timingMetric("gw-total", System.nanoTime() - startNanos));
+        json(ex, 201, body);
+    }
+
+    private void list(HttpExchange ex, String requestId) throws IOException {
+        Map<String, String> q = queryParams(ex);
+
+        int limit = Integer.MAX_VALUE;
+        if (q.containsKey("limit")) {
+            try {
+                limit = Math.min(Integer.parseInt(q.get("limit")), MAX_PAGE);
+            } catch (NumberFormatException e) {
+                limit = 0;
+            }
+            if (limit < 1) {
+                error(ex, 400, "INVALID_QUERY", "limit must be a positive integer", requestId);
+                return;
+            }
+        }
+
+        NavigableMap<Long, Doc> view = bySeq.descendingMap();
+        if (q.containsKey("cursor")) {
+            Long after = decodeCursor(q.get("cursor"));
+            if (after == null) {
+                error(ex, 400, "INVALID_QUERY", "Invalid cursor", requestId);
+                return;
+            }
+            view = view.tailMap(after, false);
+        }
+
+        String mimeType = q.get("mimeType");
+        Boolean isImage;
+        Boolean hasText;
+        try {
+            isImage = parseFlag(q.get("isImage"));
+            hasText = parseFlag(q.get("hasText"));
+        } catch (IllegalArgumentException e) {
+            error(ex, 400, "INVALID_QUERY", "isImage and hasText must be true or false", requestId);
+            return;
+        }
+
+        JsonArray docs = new JsonArray();
+        Long last = null;
+        String nextCursor = null;
+        for (Doc d : view.values()) {
+            if (mimeType != null && !mimeType.equals(d.mimeType)) continue;
+            if (isImage != null && isImage != d.isImage()) continue;
+            if (hasText != null && hasText != (d.text != null)) continue;
+            if (docs.size() == limit) {
+                nextCursor = encodeCursor(last);
+                break;
+            }
+            docs.add(listItemView(d));
+            last = d.seq;
+        }
+
+        JsonObject body = new JsonObject();
+        body.add("documents", docs);
+        body.addProperty("count", docs.size());
+        body.addProperty("nextCursor", nextCursor);
+        body.addProperty("requestId", requestId);
+        json(ex, 200, body);
+    }
+
+    private void document(HttpExchange ex, String id, String requestId) throws IOException {
+        Doc d = documents.get(id);
+        if (d == null) {
+            error(ex, 404, "NOT_FOUND", "Document not found.", requestId);
+            return;
+        }
+        JsonObject body = new JsonObject();
+        body.add("document", listItemView(d));
+        body.addProperty("requestId", requestId);
+        json(ex, 200, body);
+    }
+
+    private void delete(HttpExchange ex, String id, String requestId) throws IOException {
+        Doc d = documents.remove(id);
+        if (d == null) {
+            error(ex, 404, "NOT_FOUND", "Document not found.", requestId);
+            return;
+        }
+        bySeq.remove(d.seq);
+        if (d.file != null) Files.deleteIfExists(d.file);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("deleted", true);
+        body.addProperty("documentId", id);
+        body.addProperty("requestId", requestId);
+        json(ex, 200, body);
+    }
+
+    private void download(HttpExchange ex, String id, String requestId) throws IOException {
+        Doc d = documents.get(id);
+        if (d == null) {
+            error(ex, 404, "NOT_FOUND", "Document not found.", requestId);
+            return;
+        }
+        ex.getResponseHeaders().set("Content-Type", d.mimeType);
+        ex.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + d.originalName + "\"");
+        ex.sendResponseHeaders(200, d.size == 0 ? -1 : d.size);
+        try (InputStream in = d.open(); OutputStream out = throttle(ex.getResponseBody(), bytesSent)) {
+            in.transferTo(out);
+        }
+    }
+
+    private void text(HttpExchange ex, String id, String requestId) throws IOException {
+        Doc d = documents.get(id);
+        if (d == null || d.text == null) {
+            error(ex, 404, "NOT_FOUND", "No extracted text found for this document.", requestId);
+            return;
+        }
+        ex.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + d.textFileId + "\"");
+        send(ex, 200, "text/plain; charset=utf-8", d.text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void preview(HttpExchange ex, String id, String requestId) throws IOException {
+        Doc d = documents.get(id);
+        if (d == null || d.text == null) {
+            error(ex, 404, "NOT_FOUND", "No extracted text found for this document.", requestId);
+            return;
+        }
+        JsonObject body = new JsonObject();
+        body.addProperty("documentId", id);
+        body.addProperty("text", d.text);
+        body.addProperty("characterCount", d.text.length());
+        body.addProperty("requestId", requestId);
+        json(ex, 200, body);
+    }
+
+    private void job(HttpExchange ex, String id, String requestId) throws IOException {
+        Doc d = documents.get(id);
+        Job job = d != null ? d.job : null;
+        if (job == null) {
+            error(ex, 404, "NOT_FOUND", "Job not found.", requestId);
+            return;
+        }
+
+        double waitS = 0;
+        try {
+            waitS = Math.min(Math.max(Double.parseDouble(queryParams(ex).getOrDefault("wait", "0")), 0), 30);
+        } catch (NumberFormatException e) {
+            // no wait
+        }
+        if (waitS > 0) {
+            try {
+                job.finished.get((long) (waitS * 1000), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // report the current state
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Emulator shutting down");
+            }
+        }
+
+        JsonObject body = new JsonObject();
+        body.add("job", jobView(job));
+        body.addProperty("requestId", requestId);
+        json(ex, 200, body);
+    }
+
+    private static String timingMetric(String name, long nanos) {
+        return String.format(Locale.ROOT, "%s;dur=%.1f", name, nanos / 1e6);
+    }
+
+    // ─── OCR Simulation ────────────────────────────────────────────────────
+
+    /** Run emulated OCR on doc. Returns the OCR error, or null on success. */
+    private String runOcr(Doc doc) throws InterruptedException {
+        Semaphore slots = ocrSlots;
+        if (slots != null) slots.acquire();
+        try {
+            long nanos = ocrBaseNanos + ocrPerMbNanos * doc.size / MB;
+            if (nanos > 0) TimeUnit.NANOSECONDS.sleep(nanos);
+        } finally {
+            if (slots != null) slots.release();
+        }
+        ocrRuns.increment();
+
+        if (draw(OCR_STREAM, ocrDraws.incrementAndGet()) < ocrFailureRate) {
+            return "Emulated OCR failure";
+        }
+        doc.text = emulatedText(doc, ocrTextChars);
+        doc.textFileId = stripExtension(doc.id) + ".txt";
+        return null;
+    }
+
+    private void runJob(Doc doc, Job job) {
+        job.status = "processing";
+        job.startedAt = Instant.now().toString();
+        try {
+            job.error = runOcr(doc);
+            job.status = job.error == null ? "done" : "failed";
+        } catch (InterruptedException e) {
+            job.error = "Emulator shut down";
+            job.status = "failed";
+        }
+        job.finishedAt = Instant.now().toString();
+        job.finished.complete(null);
+    }
+
+    private static String emulatedText(Doc doc, int chars) {
+        String line = "EMULATED OCR " + doc.originalName + " 42.17 EUR\n";
+        StringBuilder sb = new StringBuilder(chars + line.length());
+        while (sb.length() < chars) sb.append(line);
+        sb.setLength(Math.max(chars, 0));
+        return sb.toString();
+    }
+
+    // ─── Multipart Upload ──────────────────────────────────────────────────
+
+    /** Read the body, storing the "document" part. Returns null if there is none. */
+    private Doc receiveDocument(InputStream body, String boundary) throws IOException {
+        byte[] delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        PushbackInputStream in = new PushbackInputStream(body, IO_CHUNK + delimiter.length);
+
+        // Preamble up to the first boundary (prefixed with CRLF so the delimiter matches)
+        in.unread(new byte[] {'\r', '\n'});
+        copyUntil(in, delimiter, OutputStream.nullOutputStream(), Long.MAX_VALUE);
+
+        Doc doc = null;
+        while (true) {
+            byte[] after = in.readNBytes(2);
+            if (after.length < 2 || (after[0] == '-' && after[1] == '-')) break;   // closing boundary
+
+            Map<String, String> headers = readPartHeaders(in);
+            String disposition = headers.getOrDefault("content-disposition", "");
+            String name = dispositionParam(disposition, "name");
+            String fileName = dispositionParam(disposition, "filename");
+
+            if (doc != null || !"document".equals(name) || fileName == null) {
+                copyUntil(in, delimiter, OutputStream.nullOutputStream(), Long.MAX_VALUE);
+                continue;
+            }
+            doc = newDoc(fileName, headers.get("content-type"));
+            storeContent(in, delimiter, doc);
+        }
+        return doc;
+    }
+
+    private Doc newDoc(String fileName, String partType) {
+        String originalName = Path.of(fileName.replace('\\', '/')).getFileName().toString();
+        long ts = lastTimestamp.updateAndGet(prev -> Math.max(prev + 1, System.currentTimeMillis()));
+        Doc doc = new Doc();
+        doc.seq = seq.incrementAndGet();
+        doc.id = ts + "-" + originalName.replaceAll("[^a-zA-Z0-9._-]", "_");
+        doc.originalName = originalName;
+        doc.mimeType = mimeType(originalName, partType);
+        doc.uploadedAt = Instant.ofEpochMilli(ts).toString();
+        return doc;
+    }
+
+    private void storeContent(PushbackInputStream in, byte[] delimiter, Doc doc) throws IOException {
+        if (storageDir == null) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            doc.size = copyUntil(in, delimiter, buf, maxUploadBytes);
+            doc.content = buf.toByteArray();
+            return;
+        }
+        Path tmp = Files.createTempFile(storageDir, "upload-", ".part");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                doc.size = copyUntil(in, delimiter, out, maxUploadBytes);
+            }
+            doc.file = storageDir.resolve(doc.id);
+            Files.move(tmp, doc.file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Copy bytes up to the delimiter to out and consume the delimiter.
+     * Returns the bytes copied; throws if they exceed limit.
+     */
+    private static long copyUntil(PushbackInputStream in, byte[] delimiter, OutputStream out, long limit)
+            throws IOException {
+        byte[] buf = new byte[IO_CHUNK + delimiter.length];
+        int len = 0;
+        long total = 0;
+        while (true) {
+            int n = in.read(buf, len, buf.length - len);
+            if (n < 0) throw new MalformedUploadException("Multipart body ended before its closing boundary");
+            len += n;
+
+            int at = indexOf(buf, len, delimiter);
+            if (at >= 0) {
+                total += at;
+                if (total > limit) throw new UploadTooLargeException();
+                out.write(buf, 0, at);
+                int rest = at + delimiter.length;
+                if (rest < len) in.unread(buf, rest, len - rest);
+                return total;
+            }
+
+            // Keep a tail that could be the start of the delimiter
+            int keep = Math.min(len, delimiter.length - 1);
+            int flush = len - keep;
+            total += flush;
+            if (total > limit) throw new UploadTooLargeException();
+            out.write(buf, 0, flush);
+            System.arraycopy(buf, flush, buf, 0, keep);
+            len = keep;
+        }
+    }
+
+    private static int indexOf(byte[] buf, int len, byte[] target) {
+        outer:
+        for (int i = 0; i <= len - target.length; i++) {
+            if (buf[i] != target[0]) continue;
+            for (int j = 1; j < target.length; j++) {
+                if (buf[i + j] != target[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /** Part headers after a boundary line, names lower-cased. */
+    private static Map<String, String> readPartHeaders(InputStream in) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int total = 0;
+        int prev = -1;
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (++total > 16 * 1024) throw new MalformedUploadException("Multipart part headers too long");
+            if (prev == '\r' && c == '\n') {
+                byte[] bytes = line.toByteArray();
+                String text = new String(bytes, 0, bytes.length - 1, StandardCharsets.UTF_8);
+                if (text.isEmpty()) {
+                    if (total > 2) return headers;   // blank line ends the headers
+                } else {
+                    int colon = text.indexOf(':');
+                    if (colon > 0) {
+                        headers.put(text.substring(0, colon).trim().toLowerCase(Locale.ROOT), text.substring(colon + 1).trim());
+                    }
+                }
+                line.reset();
+                prev = -1;
+                continue;
+            }
+            line.write(c);
+            prev = c;
+        }
+        throw new MalformedUploadException("Multipart body ended inside part headers");
+    }
+
+    private static String dispositionParam(String disposition, String param) {
+        for (String piece : disposition.split(";")) {
+            String p = piece.trim();
+            if (p.regionMatches(true, 0, param + "=", 0, param.length() + 1)) {
+                String value = p.substring(param.length() + 1);
+                return value.startsWith("\"") && value.endsWith("\"") && value.length() >= 2
+                    ? value.substring(1, value.length() - 1) : value;
+            }
+        }
+        return null;
+    }
+
+    private static String boundaryOf(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+            return null;
+        }
+        String boundary = dispositionParam(contentType, "boundary");
+        return boundary == null || boundary.isEmpty() ? null : boundary;
+    }
+
+    private static class UploadTooLargeException extends IOException {
+        UploadTooLargeException() {
+            super("Upload exceeds the size limit");
+        }
+    }
+
+    private static class MalformedUploadException extends IOException {
+        MalformedUploadException(String message) {
+            super(message);
+        }
+    }
+
+    // ─── Views (same JSON as the gateway) ──────────────────────────────────
+
+    private JsonObject uploadView(Doc d, String ocrError) {
+        JsonObject classification = new JsonObject();
+        classification.addProperty("isImage", d.isImage());
+        classification.addProperty("isPdf", d.isPdf());
+        classification.addProperty("category", d.isImage() ? "image" : d.isPdf() ? "pdf" : "document");
+
+        JsonObject ocr = new JsonObject();
+        ocr.addProperty("applied", d.text != null);
+        ocr.addProperty("extractedText", d.text);
+        ocr.addProperty("textFileId", d.textFileId);
+        ocr.addProperty("characterCount", d.text != null ? d.text.length() : 0);
+        ocr.addProperty("error", ocrError);
+
+        JsonObject links = new JsonObject();
+        links.addProperty("downloadOriginal", "/v1/documents/" + encode(d.id) + "/download");
+        links.addProperty("downloadText", d.text != null ? "/v1/documents/" + encode(d.id) + "/text" : null);
+        links.addProperty("delete", "/v1/documents/" + encode(d.id));
+
+        JsonObject doc = new JsonObject();
+        doc.addProperty("id", d.id);
+        doc.addProperty("originalName", d.originalName);
+        doc.addProperty("mimeType", d.mimeType);
+        doc.addProperty("sizeBytes", d.size);
+        doc.add("classification", classification);
+        doc.add("ocr", ocr);
+        doc.add("links", links);
+        return doc;
+    }
+
+    private JsonObject listItemView(Doc d) {
+        JsonObject ocr = new JsonObject();
+        ocr.addProperty("hasExtractedText", d.text != null);
+        ocr.addProperty("textFileId", d.textFileId);
+
+        JsonObject links = new JsonObject();
+        links.addProperty("downloadOriginal", "/v1/documents/" + encode(d.id) + "/download");
+        links.addProperty("downloadText", d.text != null ? "/v1/documents/" + encode(d.id) + "/text" : null);
+        links.addProperty("delete", "/v1/documents/" + encode(d.id));
+
+        JsonObject item = new JsonObject();
+        item.addProperty("id", d.id);
+        item.addProperty("mimeType", d.mimeType);
+        item.addProperty("sizeBytes", d.size);
+        item.addProperty("isImage", d.isImage());
+        item.addProperty("uploadedAt", d.uploadedAt);
+        item.add("ocr", ocr);
+        item.add("links", links);
+        return item;
+    }
+
+    private JsonObject jobView(Job job) {
+        Doc d = documents.get(job.id);
+        String textFileId = "done".equals(job.status) && d != null ? d.textFileId : null;
+        String id = encode(job.id);
+
+        JsonObject links = new JsonObject();
+        links.addProperty("self", "/v1/jobs/" + id);
+        links.addProperty("document", "/v1/documents/" + id);
+        links.addProperty("textPreview", textFileId != null ? "/v1/documents/" + id + "/text/preview" : null);
+
+        JsonObject view = new JsonObject();
+        view.addProperty("id", job.id);
+        view.addProperty("documentId", job.id);
+        view.addProperty("status", job.status);
+        view.addProperty("createdAt", job.createdAt);
+        view.addProperty("startedAt", job.startedAt);
+        view.addProperty("finishedAt", job.finishedAt);
+        view.addProperty("textFileId", textFileId);
+        view.addProperty("characterCount", textFileId != null ? d.text.length() : 0);
+        view.addProperty("error", job.error);
+        view.add("links", links);
+        return view;
+    }
+
+    // ─── Responses ─────────────────────────────────────────────────────────
+
+    private void json(HttpExchange ex, int status, JsonObject body) throws IOException {
+        send(ex, status, "application/json; charset=utf-8", gson.toJson(body).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void error(HttpExchange ex, int status, String code, String message, String requestId) {
+        JsonObject error = new JsonObject();
+        error.addProperty("code", code);
+        error.addProperty("message", message);
+        error.addProperty("requestId", requestId);
+        JsonObject body = new JsonObject();
+        body.add("error", error);
+        try {
+            json(ex, status, body);
+        } catch (IOException e) {
+            // Client went away
+        }
+    }
+
+    private void send(HttpExchange ex, int status, String contentType, byte[] body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = throttle(ex.getResponseBody(), bytesSent)) {
+            out.write(body);
+        }
+    }
+
+    // ─── Bandwidth ─────────────────────────────────────────────────────────
+
+    private InputStream throttle(InputStream in, LongAdder counter) {
+        long rate = bandwidth;
+        Pacer pacer = new Pacer(rate, counter);
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) pacer.pace(1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, rate > 0 ? Math.min(len, IO_CHUNK) : len);
+                if (n > 0) pacer.pace(n);
+                return n;
+            }
+        };
+    }
+
+    private OutputStream throttle(OutputStream out, LongAdder counter) {
+        long rate = bandwidth;
+        Pacer pacer = new Pacer(rate, counter);
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                pacer.pace(1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                int step = rate > 0 ? IO_CHUNK : Math.max(len, 1);
+                for (int pos = off, end = off + len; pos < end; pos += step) {
+                    int n = Math.min(step, end - pos);
+                    out.write(b, pos, n);
+                    pacer.pace(n);
+                }
+            }
+        };
+    }
+
+    /** Sleeps so that bytes moved never run ahead of the rate (0 = no limit). */
+    private static final class Pacer {
+        private final long bytesPerSecond;
+        private final LongAdder counter;
+        private final long startNanos = System.nanoTime();
+        private long bytes;
+
+        Pacer(long bytesPerSecond, LongAdder counter) {
+            this.bytesPerSecond = bytesPerSecond;
+            this.counter = counter;
+        }
+
+        void pace(int n) throws InterruptedIOException {
+            counter.add(n);
+            if (bytesPerSecond <= 0) return;
+            bytes += n;
+            long due = startNanos + (long) (bytes * 1e9 / bytesPerSecond);
+            long wait = due - System.nanoTime();
+            if (wait <= 0) return;
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttling");
+            }
+        }
+    }
+
+    // ─── Internal Helpers ──────────────────────────────────────────────────
+
+    private static final class Doc {
+        long seq;
+        String id;
+        String originalName;
+        String mimeType;
+        long size;
+        String uploadedAt;
+        byte[] content;       // in-memory store
+        Path file;            // directory store
+        volatile String text;
+        volatile String textFileId;
+        volatile Job job;
+
+        boolean isImage() {
+            return mimeType.startsWith("image/");
+        }
+
+        boolean isPdf() {
+            return mimeType.equals("application/pdf");
+        }
+
+        boolean isOcrType() {
+            return isImage() || isPdf();
+        }
+
+        InputStream open() throws IOException {
+            return file != null ? Files.newInputStream(file) : new ByteArrayInputStream(content);
+        }
+    }
+
+    private static final class Job {
+        final String id;
+        final String createdAt = Instant.now().toString();
+        final CompletableFuture<Void> finished = new CompletableFuture<>();
+        volatile String status = "queued";
+        volatile String startedAt;
+        volatile String finishedAt;
+        volatile String error;
+
+        Job(String id) {
+            this.id = id;
+        }
+    }
+
+    private static final class Window {
+        long startMs;
+        int count;
+    }
+
+    private static final Map<String, String> MIME_TYPES = new HashMap<>();
+    static {
+        MIME_TYPES.put("png", "image/png");
+        MIME_TYPES.put("jpg", "image/jpeg");
+        MIME_TYPES.put("jpeg", "image/jpeg");
+        MIME_TYPES.put("tif", "image/tiff");
+        MIME_TYPES.put("tiff", "image/tiff");
+        MIME_TYPES.put("bmp", "image/bmp");
+        MIME_TYPES.put("gif", "image/gif");
+        MIME_TYPES.put("webp", "image/webp");
+        MIME_TYPES.put("pdf", "application/pdf");
+        MIME_TYPES.put("txt", "text/plain");
+        MIME_TYPES.put("csv", "text/csv");
+        MIME_TYPES.put("json", "application/json");
+        MIME_TYPES.put("doc", "application/msword");
+        MIME_TYPES.put("docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+    }
+
+    /** By extension, like the gateway; else the part's Content-Type. */
+    private static String mimeType(String fileName, String partType) {
+        int dot = fileName.lastIndexOf('.');
+        String byExt = dot >= 0 ? MIME_TYPES.get(fileName.substring(dot + 1).toLowerCase(Locale.ROOT)) : null;
+        if (byExt != null) return byExt;
+        return partType != null && !partType.isEmpty() ? partType : "application/octet-stream";
+    }
+
+    private static Map<String, String> queryParams(HttpExchange ex) {
+        Map<String, String> params = new HashMap<>();
+        String query = ex.getRequestURI().getRawQuery();
+        if (query == null) return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, StandardCharsets.UTF_8);
+            String value = eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8) : "";
+            params.putIfAbsent(name, value);
+        }
+        return params;
+    }
+
+    private static Boolean parseFlag(String value) {
+        if (value == null) return null;
+        if (value.equals("true")) return Boolean.TRUE;
+        if (value.equals("false")) return Boolean.FALSE;
+        throw new IllegalArgumentException(value);
+    }
+
+    private static String encodeCursor(long seq) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(("s:" + seq).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Long decodeCursor(String cursor) {
+        try {
+            String s = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return s.startsWith("s:") ? Long.parseLong(s.substring(2)) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String stripExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String encode(String s) {
+        return DocScanClient.encode(s);
+    }
+
+    // ─── Standalone ────────────────────────────────────────────────────────
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        DocScanEmulator emulator = new DocScanEmulator(port).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(emulator::close));
+        System.out.println("DocScan emulator listening on " + emulator.baseUrl()
+            + " (API key: " + emulator.apiKey() + ")");
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,118 @@
+package com.docupload;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * ═══════════════════════════════════════════════════════════════════════════
+ * DocScan Flight Recorder Events
+ * ═══════════════════════════════════════════════════════════════════════════
+ * JFR events for the phases of every request {@link DocScanClient} makes,
+ * recorded by {@link CallTrace}. In a recording they sit next to the JDK's
+ * GC, thread-park and socket events, under the "DocScan" category:
+ *
+ *   com.docupload.Connect         request sent → transport pulls the body
+ *                                 (connection wait, connect/TLS, headers)
+ *   com.docupload.UploadWrite     first → last request body byte
+ *   com.docupload.ServerWait      last byte sent → response headers (TTFB);
+ *                                 for requests without a body, includes connect
+ *   com.docupload.ResponseDecode  reading and decoding a JSON response
+ *   com.docupload.Download        saving a downloaded file
+ *
+ * Each carries the endpoint, document id (for uploads, the id the server
+ * assigned), X-Request-Id and a byte count. Events are only created while
+ * a recording has them enabled, and take no stack traces.
+ *
+ *   java -XX:StartFlightRecording=filename=ingest.jfr,settings=profile ...
+ *   jfr print --categories DocScan ingest.jfr
+ * ═══════════════════════════════════════════════════════════════════════════
+ */
+final class DocScanEvents {
+
+    private DocScanEvents() {}
+
+    private static final EventType[] TYPES = {
+        EventType.getEventType(Connect.class),
+        EventType.getEventType(UploadWrite.class),
+        EventType.getEventType(ServerWait.class),
+        EventType.getEventType(ResponseDecode.class),
+        EventType.getEventType(Download.class),
+    };
+
+    /** True while a recording has any DocScan event enabled. */
+    static boolean enabled() {
+        for (EventType type : TYPES) {
+            if (type.isEnabled()) return true;
+        }
+        return false;
+    }
+
+    /** Fields shared by every phase. */
+    @Category({"DocScan", "Client"})
+    @StackTrace(false)
+    abstract static class Phase extends Event {
+        @Label("Endpoint")
+        String endpoint;
+
+        @Label("Document Id")
+        String documentId;
+
+        @Label("Request Id")
+        @Description("X-Request-Id sent with the request")
+        String requestId;
+    }
+
+    @Name("com.docupload.Connect")
+    @Label("DocScan Connect")
+    @Description("From handing the request to the transport until it starts reading the body")
+    static final class Connect extends Phase {
+        @Label("Request Bytes")
+        @DataAmount
+        long requestBytes;
+    }
+
+    @Name("com.docupload.UploadWrite")
+    @Label("DocScan Upload Body Write")
+    @Description("Sending the request body")
+    static final class UploadWrite extends Phase {
+        @Label("Bytes Written")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.docupload.ServerWait")
+    @Label("DocScan Server Wait")
+    @Description("From the last request byte until the response headers arrived (time to first byte)")
+    static final class ServerWait extends Phase {
+        @Label("Status")
+        int status;
+
+        @Label("Request Bytes")
+        @DataAmount
+        long requestBytes;
+    }
+
+    @Name("com.docupload.ResponseDecode")
+    @Label("DocScan Response Decode")
+    @Description("Reading and decoding the response body")
+    static final class ResponseDecode extends Phase {
+        @Label("Bytes Read")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.docupload.Download")
+    @Label("DocScan Download")
+    @Description("Reading a downloaded file and saving it")
+    static final class Download extends Phase {
+        @Label("Bytes Read")
+        @DataAmount
+        long bytes;
+    }
+}
@@ -0,0 +1,160 @@
+package com.docupload;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ═══════════════════════════════════════════════════════════════════════════
+ * DocScan Transport
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Pluggable HTTP layer underneath {@link DocScanClient}. The client builds a
+ * {@link Request}, hands it to the transport and reads the {@link Response}.
+ *
+ * Implementations must be thread-safe: a single transport instance serves
+ * every caller of the client that owns it.
+ *
+ *   HttpClientTransport     — default; one shared java.net.http.HttpClient
+ *                             with keep-alive pooling, HTTP/2 and per-host
+ *                             connection limits
+ *   UrlConnectionTransport  — one HttpURLConnection per request
+ * ═══════════════════════════════════════════════════════════════════════════
+ */
+public interface DocScanTransport {
+
+    /**
+     * Send a request and wait for the response headers.
+     * The caller must close the returned response.
+     */
+    Response execute(Request request) throws IOException;
+
+    /**
+     * Send a request without blocking the caller. The future completes once
+     * the response headers have arrived; the caller must close the response.
+     *
+     * The default runs {@link #execute} on the given executor. Transports with
+     * native non-blocking I/O override this so no thread waits on the server.
+     */
+    default CompletableFuture<Response> executeAsync(Request request, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return execute(request);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    // ─── Request ───────────────────────────────────────────────────────────
+
+    /** An outgoing HTTP request. */
+    final class Request {
+        private final String method;
+        private final URI uri;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private Body body;
+        private Duration timeout;
+
+        public Request(String method, URI uri) {
+            this.method = method;
+            this.uri = uri;
+        }
+
+        public Request header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        public Request body(Body body) {
+            this.body = body;
+            return this;
+        }
+
+        public Request timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public String method()               { return method; }
+        public URI uri()                     { return uri; }
+        public Map<String, String> headers() { return Collections.unmodifiableMap(headers); }
+        public Body body()                   { return body; }
+        public Duration timeout()            { return timeout; }
+    }
+
+    /** A request body that can be (re)opened as a stream. */
+    interface Body {
+        /** Exact length in bytes, or -1 if unknown (sent chunked). */
+        long contentLength();
+
+        /** Content-Type header value for this body. */
+        String contentType();
+
+        /** Open a fresh stream over the body bytes. */
+        InputStream openStream() throws IOException;
+
+        /** Write the whole body to a blocking output stream. */
+        default void writeTo(OutputStream out) throws IOException {
+            try (InputStream in = openStream()) {
+                in.transferTo(out);
+            }
+        }
+    }
+
+    // ─── Response ──────────────────────────────────────────────────────────
+
+    /** A received HTTP response. Closing it releases the underlying connection. */
+    final class Response implements Closeable {
+        private final int statusCode;
+        private final Map<String, List<String>> headers;
+        private final InputStream body;
+        private final Runnable onClose;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        public Response(int statusCode, Map<String, List<String>> headers, InputStream body, Runnable onClose) {
+            this.statusCode = statusCode;
+            this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+                // HttpURLConnection reports the status line under a null key
+                if (e.getKey() != null) this.headers.put(e.getKey(), e.getValue());
+            }
+            this.body = body != null ? body : new ByteArrayInputStream(new byte[0]);
+            this.onClose = onClose;
+        }
+
+        public int statusCode() { return statusCode; }
+
+        /** First value of a header (case-insensitive), or null if absent. */
+        public String header(String name) {
+            List<String> values = headers.get(name);
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+
+        public Map<String, List<String>> headers() { return Collections.unmodifiableMap(headers); }
+
+        public InputStream body() { return body; }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed.compareAndSet(false, true)) return;
+            try {
+                body.close();
+            } finally {
+                if (onClose != null) onClose.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.docupload;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import com.docupload.DocScanClient.DocumentInfo;
+import com.docupload.DocScanClient.DocumentList;
+
+/**
+ * Lazily walks the pages of GET /v1/documents.
+ *
+ * As soon as a page arrives, the request for the next page is started, so
+ * the caller works through one page while the next is in flight. At most
+ * two pages are held in memory. I/O errors surface from hasNext()/next() as
+ * {@link UncheckedIOException}; close() cancels an outstanding prefetch.
+ */
+final class DocumentPager implements Iterator<DocumentInfo>, AutoCloseable {
+
+    private final Function<String, CompletableFuture<DocumentList>> fetchPage;
+
+    private DocumentInfo[] page = new DocumentInfo[0];
+    private int index;
+    private CompletableFuture<DocumentList> pending;
+
+    /**
+     * @param fetchPage  Fetches the page after the given cursor (null = first page)
+     */
+    DocumentPager(Function<String, CompletableFuture<DocumentList>> fetchPage) {
+        this.fetchPage = fetchPage;
+        this.pending = fetchPage.apply(null);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (index >= page.length) {
+            if (pending == null) return false;
+            DocumentList next = await(pending);
+            pending = next.nextCursor != null ? fetchPage.apply(next.nextCursor) : null;
+            page = next.documents != null ? next.documents : new DocumentInfo[0];
+            index = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public DocumentInfo next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        DocumentInfo info = page[index];
+        page[index++] = null;  // let consumed entries be collected
+        return info;
+    }
+
+    @Override
+    public void close() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        page = new DocumentInfo[0];
+    }
+
+    private static DocumentList await(CompletableFuture<DocumentList> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted waiting for document page"));
+        } catch (CancellationException e) {
+            throw new IllegalStateException("Document pager is closed", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw new UncheckedIOException((IOException) cause);
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
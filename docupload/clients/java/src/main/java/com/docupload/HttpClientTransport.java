@@ -0,0 +1,199 @@
+package com.docupload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * ═══════════════════════════════════════════════════════════════════════════
+ * HttpClient Transport
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Default {@link DocScanTransport}, backed by one shared, thread-safe
+ * {@link HttpClient}:
+ *
+ *   • Keep-alive pooling — HTTP/1.1 connections are reused across requests
+ *     (pool size and idle timeout follow the JDK's jdk.httpclient.* system
+ *     properties)
+ *   • HTTP/2 — negotiated via ALPN on https, or h2c upgrade on plain http;
+ *     falls back to HTTP/1.1 when the gateway does not support it
+ *   • Per-host limits — at most maxConnectionsPerHost requests are in flight
+ *     to a host at once; further callers wait for a free slot
+ *   • Non-blocking — executeAsync() uses HttpClient.sendAsync and queues for
+ *     per-host slots without parking a thread
+ *
+ * A single instance comfortably serves hundreds of concurrent callers.
+ * ═══════════════════════════════════════════════════════════════════════════
+ */
+public class HttpClientTransport implements DocScanTransport {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 64;
+
+    private final HttpClient http;
+    private final int maxConnectionsPerHost;
+    private final Map<String, HostPermits> hostPermits = new ConcurrentHashMap<>();
+
+    public HttpClientTransport(int connectTimeoutMs) {
+        this(connectTimeoutMs, DEFAULT_MAX_CONNECTIONS_PER_HOST, HttpClient.Version.HTTP_2);
+    }
+
+    /**
+     * @param connectTimeoutMs       TCP/TLS connect timeout
+     * @param maxConnectionsPerHost  Max concurrent requests per host:port
+     * @param version                Preferred HTTP version (HTTP_2 falls back to HTTP/1.1)
+     */
+    public HttpClientTransport(int connectTimeoutMs, int maxConnectionsPerHost, HttpClient.Version version) {
+        this(HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build(),
+            maxConnectionsPerHost);
+    }
+
+    /** Wrap an existing, caller-configured HttpClient. */
+    public HttpClientTransport(HttpClient http, int maxConnectionsPerHost) {
+        if (maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("maxConnectionsPerHost must be >= 1");
+        }
+        this.http = http;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    public HttpClient httpClient() {
+        return http;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        HostPermits permits = permitsFor(request.uri());
+        permits.acquireBlocking(request.uri());
+
+        try {
+            HttpResponse<InputStream> res = http.send(toHttpRequest(request), HttpResponse.BodyHandlers.ofInputStream());
+            return new Response(res.statusCode(), res.headers().map(), res.body(), permits::release);
+        } catch (InterruptedException e) {
+            permits.release();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during " + request.method() + " " + request.uri());
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request, Executor executor) {
+        HostPermits permits = permitsFor(request.uri());
+        return permits.acquire()
+            .thenCompose(ignored -> {
+                CompletableFuture<HttpResponse<InputStream>> sent;
+                try {
+                    sent = http.sendAsync(toHttpRequest(request), HttpResponse.BodyHandlers.ofInputStream());
+                } catch (RuntimeException e) {
+                    sent = CompletableFuture.failedFuture(e);
+                }
+                return sent.whenComplete((res, err) -> {
+                    if (err != null) permits.release();
+                });
+            })
+            .thenApply(res -> new Response(res.statusCode(), res.headers().map(), res.body(), permits::release));
+    }
+
+    // ─── Internal Helpers ──────────────────────────────────────────────────
+
+    private HostPermits permitsFor(URI uri) {
+        String hostKey = uri.getHost() + ":" + uri.getPort();
+        return hostPermits.computeIfAbsent(hostKey, k -> new HostPermits(maxConnectionsPerHost));
+    }
+
+    static HttpRequest toHttpRequest(Request request) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.uri());
+        if (request.timeout() != null) builder.timeout(request.timeout());
+        request.headers().forEach(builder::header);
+
+        Body body = request.body();
+        if (body == null) {
+            builder.method(request.method(), HttpRequest.BodyPublishers.noBody());
+        } else {
+            builder.header("Content-Type", body.contentType());
+            builder.method(request.method(), publisherFor(body));
+        }
+        return builder.build();
+    }
+
+    private static HttpRequest.BodyPublisher publisherFor(Body body) {
+        HttpRequest.BodyPublisher stream = HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return body.openStream();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long length = body.contentLength();
+        return length >= 0 ? HttpRequest.BodyPublishers.fromPublisher(stream, length) : stream;
+    }
+
+    /**
+     * FIFO counting semaphore whose waiters are futures rather than parked
+     * threads, so async callers queue for a slot without blocking.
+     */
+    static final class HostPermits {
+        private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+        private int available;
+
+        HostPermits(int permits) {
+            this.available = permits;
+        }
+
+        synchronized CompletableFuture<Void> acquire() {
+            if (available > 0) {
+                available--;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        }
+
+        void acquireBlocking(URI uri) throws IOException {
+            CompletableFuture<Void> slot = acquire();
+            try {
+                slot.get();
+            } catch (InterruptedException e) {
+                // If the slot was granted while we were being interrupted, hand it back
+                if (!slot.cancel(false)) release();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a connection to " + uri.getHost());
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+
+        void release() {
+            while (true) {
+                CompletableFuture<Void> next;
+                synchronized (this) {
+                    next = waiters.poll();
+                    if (next == null) {
+                        available++;
+                        return;
+                    }
+                }
+                // Skip waiters that gave up (cancelled) and hand the slot to the next one
+                if (next.complete(null)) return;
+            }
+        }
+    }
+}
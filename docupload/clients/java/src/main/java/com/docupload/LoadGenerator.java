@@ -0,0 +1,571 @@
+package com.docupload;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.docupload.DocScanClient.ApiException;
+import com.docupload.DocScanClient.Endpoint;
+import com.docupload.DocScanClient.UploadResult;
+import com.google.gson.GsonBuilder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * ═══════════════════════════════════════════════════════════════════════════
+ * DocScan Load Generator
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Drives a gateway with a mix of uploads (from a corpus directory) and
+ * list / text / download / delete calls on the documents uploaded so far,
+ * and reports per-endpoint latency percentiles from HdrHistogram.
+ *
+ * Two load models:
+ *
+ *   --rate R         open model: operations are scheduled at a fixed R/s,
+ *                    whether or not earlier ones have finished. Latency
+ *                    is measured from the scheduled start, so a stalled
+ *                    server shows up as queueing delay instead of fewer
+ *                    (and faster-looking) samples.
+ *   --concurrency C  closed model: C workers, each starting its next call
+ *                    when the last one returns. A call slower than the
+ *                    endpoint's mean service time is recorded with
+ *                    HdrHistogram's expected-interval correction, which
+ *                    back-fills the calls the worker would have made.
+ *
+ * Both report the corrected latency and the raw service time (actual start
+ * to completion). Calls started during the warm-up are not recorded.
+ * The CLI turns off the client's retries, adaptive rate limiting and
+ * circuit breakers (unless --client-defaults is given): retries would hide
+ * errors and add backoff to latencies, pacing would cap the open-model
+ * rate, and open breakers would record instant failures. A
+ * text / download / delete picked while no document is left runs as an
+ * upload instead, and is recorded as one.
+ *
+ * Usage:
+ *   java -cp ... com.docupload.DocScanClient load /corpus --rate 20 --duration 120
+ *   java -cp ... com.docupload.DocScanClient load /corpus --concurrency 32 \
+ *        --mix upload=50,list=20,text=20,download=5,delete=5 --json results.json
+ *   java -cp ... com.docupload.DocScanClient load /corpus --rate 50 --emulator
+ *
+ * The gateway URL and API key come from DOCSCAN_URL and DOCSCAN_API_KEY.
+ * ═══════════════════════════════════════════════════════════════════════════
+ */
+public class LoadGenerator {
+
+    /** Operations the generator issues, in --mix order. */
+    static final Endpoint[] OPERATIONS = {
+        Endpoint.UPLOAD, Endpoint.LIST, Endpoint.TEXT, Endpoint.DOWNLOAD, Endpoint.DELETE
+    };
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final DocScanClient client;
+    private final Options options;
+    private final List<Path> corpus;
+
+    private final Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+    private final List<String> documents = new ArrayList<>();   // uploaded by this run, guarded by itself
+    private final int[] cumulativeWeights = new int[OPERATIONS.length];
+    private volatile long measureFromNanos;
+
+    /**
+     * @param client   Client to drive (shared by all workers)
+     * @param options  Load shape; corpus must name a directory with at least one file
+     */
+    public LoadGenerator(DocScanClient client, Options options) throws IOException {
+        if ((options.rate > 0) == (options.concurrency > 0)) {
+            throw new IllegalArgumentException("Set exactly one of rate and concurrency");
+        }
+        this.client = client;
+        this.options = options;
+        this.corpus = listCorpus(options.corpus);
+
+        int sum = 0;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            sum += options.mix.getOrDefault(OPERATIONS[i], 0);
+            cumulativeWeights[i] = sum;
+        }
+        if (sum <= 0) throw new IllegalArgumentException("The operation mix is empty");
+        for (Endpoint op : OPERATIONS) stats.put(op, new Stats());
+    }
+
+    // ─── Options ───────────────────────────────────────────────────────────
+
+    /** Shape of a run. Exactly one of rate and concurrency is set. */
+    public static class Options {
+        public Path corpus;
+        /** Operations per second (open model), or 0. */
+        public double rate;
+        /** Closed-loop workers, or 0. */
+        public int concurrency;
+        public Duration duration = Duration.ofSeconds(60);
+        public Duration warmup = Duration.ofSeconds(10);
+        /** Relative weights of UPLOAD, LIST, TEXT, DOWNLOAD and DELETE. */
+        public Map<Endpoint, Integer> mix = defaultMix();
+        /** Open model: calls in flight at most; the schedule keeps running when it is reached. */
+        public int maxInFlight = 1024;
+        /** Delete the documents this run uploaded when it ends. */
+        public boolean cleanup;
+
+        static Map<Endpoint, Integer> defaultMix() {
+            Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+            mix.put(Endpoint.UPLOAD, 50);
+            mix.put(Endpoint.LIST, 20);
+            mix.put(Endpoint.TEXT, 20);
+            mix.put(Endpoint.DOWNLOAD, 5);
+            mix.put(Endpoint.DELETE, 5);
+            return mix;
+        }
+
+        /** Parse e.g. "upload=60,list=20,text=20". Operations left out get weight 0. */
+        static Map<Endpoint, Integer> parseMix(String spec) {
+            Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+            for (String part : spec.split(",")) {
+                String[] kv = part.trim().split("=", 2);
+                Endpoint op = Endpoint.valueOf(kv[0].trim().toUpperCase(Locale.ROOT));
+                if (!List.of(OPERATIONS).contains(op)) {
+                    throw new IllegalArgumentException("Not a load operation: " + kv[0]);
+                }
+                mix.put(op, kv.length > 1 ? Integer.parseInt(kv[1].trim()) : 1);
+            }
+            return mix;
+        }
+    }
+
+    // ─── Report ────────────────────────────────────────────────────────────
+
+    /** Latency summary of one histogram, in milliseconds. */
+    public static class Percentiles {
+        public double p50;
+        public double p90;
+        public double p99;
+        public double p99_9;
+        public double p99_99;
+        public double max;
+        public double mean;
+
+        static Percentiles of(Histogram h) {
+            Percentiles p = new Percentiles();
+            double[] values = new double[PERCENTILES.length];
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                values[i] = h.getTotalCount() == 0 ? 0 : h.getValueAtPercentile(PERCENTILES[i]) / 1000.0;
+            }
+            p.p50 = values[0];
+            p.p90 = values[1];
+            p.p99 = values[2];
+            p.p99_9 = values[3];
+            p.p99_99 = values[4];
+            p.max = h.getTotalCount() == 0 ? 0 : h.getMaxValue() / 1000.0;
+            p.mean = h.getTotalCount() == 0 ? 0 : h.getMean() / 1000.0;
+            return p;
+        }
+    }
+
+    /** Results of one endpoint over the measured part of the run. */
+    public static class EndpointReport {
+        public long count;
+        public long errors;
+        /** Error counts by API error code, HTTP status or exception type. */
+        public Map<String, Long> errorCodes;
+        public double throughput;
+        public Percentiles latencyMs;
+        public Percentiles serviceTimeMs;
+        /** Corrected latency histogram (µs), HdrHistogram compressed + base64, for merging runs. */
+        public String histogram;
+    }
+
+    public static class Report {
+        public String mode;
+        public double targetRate;
+        public int concurrency;
+        public String startedAt;
+        /** Length of the window in which recorded calls started. */
+        public double measuredSeconds;
+        public Map<String, Integer> mix;
+        public Map<String, EndpointReport> endpoints;
+        public EndpointReport total;
+
+        /** The report as JSON, e.g. for capacity-planning scripts. */
+        public String toJson() {
+            return new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create().toJson(this);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%s load, %.1f s measured%s%n", mode, measuredSeconds,
+                "rate".equals(mode) ? String.format(", target %.1f ops/s", targetRate)
+                    : String.format(", %d workers", concurrency)));
+            sb.append(String.format("%-9s %8s %7s %9s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99"));
+            Map<String, EndpointReport> rows = new LinkedHashMap<>(endpoints);
+            rows.put("total", total);
+            rows.forEach((name, r) -> {
+                if (r.count == 0) return;
+                sb.append(String.format("%-9s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    name, r.count, r.errors, r.throughput, r.latencyMs.p50, r.latencyMs.p90,
+                    r.latencyMs.p99, r.latencyMs.p99_9, r.latencyMs.max, r.serviceTimeMs.p99));
+                r.errorCodes.forEach((code, n) -> sb.append(String.format("%-9s %17s %s%n", "", n, code)));
+            });
+            return sb.toString();
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════
+    // RUN
+    // ═══════════════════════════════════════════════════════════════════════
+
+    /**
+     * Run the load for warm-up + duration, wait for calls in flight, and
+     * summarise the measured part.
+     */
+    public Report run() throws InterruptedException {
+        String startedAt = Instant.now().toString();
+        long start = System.nanoTime();
+        measureFromNanos = start + options.warmup.toNanos();
+        long end = measureFromNanos + options.duration.toNanos();
+
+        ExecutorService pool = VirtualThreads.newTaskExecutor("docscan-load");
+        try {
+            if (options.rate > 0) runOpen(pool, start, end);
+            else runClosed(pool, end);
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        if (options.cleanup) cleanup();
+        return report(startedAt, options.duration.toNanos() / 1e9);
+    }
+
+    /** Open model: one call per 1/rate seconds, timed from its scheduled start. */
+    private void runOpen(ExecutorService pool, long start, long end) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(options.maxInFlight);
+        double intervalNanos = 1e9 / options.rate;
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * intervalNanos);
+            if (intended >= end) break;
+            // parkNanos may return early (spurious wakeup, timer slack)
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+            inFlight.acquire();
+            pool.execute(() -> {
+                try {
+                    execute(pickOperation(), intended, false);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+    }
+
+    /** Closed model: each worker issues its next call as soon as the last one returns. */
+    private void runClosed(ExecutorService pool, long end) {
+        for (int w = 0; w < options.concurrency; w++) {
+            pool.execute(() -> {
+                while (System.nanoTime() < end) {
+                    execute(pickOperation(), System.nanoTime(), true);
+                }
+            });
+        }
+    }
+
+    /**
+     * Run one call and record it, under the endpoint that actually ran, if
+     * it started in the measured window.
+     *
+     * @param intended  Scheduled start (System.nanoTime)
+     * @param closed    Closed model: correct for the endpoint's mean service time
+     */
+    private void execute(Endpoint op, long intended, boolean closed) {
+        String id = null;
+        if (op == Endpoint.TEXT || op == Endpoint.DOWNLOAD || op == Endpoint.DELETE) {
+            id = pickDocument(op == Endpoint.DELETE);
+            if (id == null) op = Endpoint.UPLOAD;   // no documents left to read or delete
+        }
+        long expectedInterval = closed ? stats.get(op).meanServiceMicros() : 0;
+
+        long started = System.nanoTime();
+        String error = null;
+        try {
+            perform(op, id);
+        } catch (ApiException e) {
+            error = e.errorCode != null ? e.errorCode : "HTTP " + e.statusCode;
+        } catch (Exception e) {
+            error = e.getClass().getSimpleName();
+        }
+        long done = System.nanoTime();
+        if (intended < measureFromNanos) return;
+
+        Stats s = stats.get(op);
+        long latency = (done - intended) / 1000;
+        long service = (done - started) / 1000;
+        if (expectedInterval > 0) s.latency.recordValueWithExpectedInterval(latency, expectedInterval);
+        else s.latency.recordValue(latency);
+        s.service.recordValue(service);
+        s.serviceSum.add(service);
+        s.serviceCount.increment();
+        if (error != null) s.errors.computeIfAbsent(error, k -> new LongAdder()).increment();
+    }
+
+    /** @param id  Document for text, download and delete */
+    private void perform(Endpoint op, String id) throws IOException {
+        switch (op) {
+            case UPLOAD:
+                Path file = corpus.get(ThreadLocalRandom.current().nextInt(corpus.size()));
+                UploadResult result = client.uploadDocument(file.toString());
+                synchronized (documents) {
+                    documents.add(result.documentId);
+                }
+                break;
+            case LIST:
+                client.listDocuments(100, null);
+                break;
+            case TEXT:
+                client.getExtractedText(id);
+                break;
+            case DOWNLOAD:
+                Path tmp = Files.createTempFile("docscan-load-", ".bin");
+                try {
+                    client.downloadOriginal(id, tmp.toString());
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+                break;
+            case DELETE:
+                client.deleteDocument(id);
+                break;
+            default:
+                throw new IllegalStateException("Not a load operation: " + op);
+        }
+    }
+
+    private Endpoint pickOperation() {
+        int roll = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            if (roll < cumulativeWeights[i]) return OPERATIONS[i];
+        }
+        return Endpoint.UPLOAD;
+    }
+
+    /** A random document uploaded by this run, or null if there is none yet. */
+    private String pickDocument(boolean remove) {
+        synchronized (documents) {
+            if (documents.isEmpty()) return null;
+            int i = ThreadLocalRandom.current().nextInt(documents.size());
+            if (!remove) return documents.get(i);
+            String id = documents.get(i);
+            documents.set(i, documents.get(documents.size() - 1));
+            documents.remove(documents.size() - 1);
+            return id;
+        }
+    }
+
+    private void cleanup() {
+        List<String> ids;
+        synchronized (documents) {
+            ids = new ArrayList<>(documents);
+            documents.clear();
+        }
+        for (String id : ids) {
+            try {
+                client.deleteDocument(id);
+            } catch (Exception e) {
+                // Best effort
+            }
+        }
+    }
+
+    // ─── Recording ─────────────────────────────────────────────────────────
+
+    /** Per-endpoint recorders; recording is wait-free. Values are µs. */
+    private static final class Stats {
+        final Recorder latency = new Recorder(3);
+        final Recorder service = new Recorder(3);
+        final LongAdder serviceSum = new LongAdder();
+        final LongAdder serviceCount = new LongAdder();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        /** Mean service time so far, or 0 until there are enough samples to trust it. */
+        long meanServiceMicros() {
+            long n = serviceCount.sum();
+            return n < 20 ? 0 : serviceSum.sum() / n;
+        }
+    }
+
+    private Report report(String startedAt, double measured) {
+        Report report = new Report();
+        report.mode = options.rate > 0 ? "rate" : "concurrency";
+        report.targetRate = options.rate;
+        report.concurrency = options.concurrency;
+        report.startedAt = startedAt;
+        report.measuredSeconds = measured;
+        report.mix = new LinkedHashMap<>();
+        options.mix.forEach((op, w) -> report.mix.put(op.name().toLowerCase(Locale.ROOT), w));
+        report.endpoints = new LinkedHashMap<>();
+
+        Histogram allLatency = new Histogram(3);
+        Histogram allService = new Histogram(3);
+        Map<String, Long> allErrors = new TreeMap<>();
+        for (Endpoint op : OPERATIONS) {
+            Stats s = stats.get(op);
+            Histogram latency = s.latency.getIntervalHistogram();
+            Histogram service = s.service.getIntervalHistogram();
+            Map<String, Long> errors = new TreeMap<>();
+            s.errors.forEach((code, n) -> errors.put(code, n.sum()));
+
+            report.endpoints.put(op.name().toLowerCase(Locale.ROOT), endpointReport(latency, service, errors, measured));
+            allLatency.add(latency);
+            allService.add(service);
+            errors.forEach((code, n) -> allErrors.merge(code, n, Long::sum));
+        }
+        report.total = endpointReport(allLatency, allService, allErrors, measured);
+        return report;
+    }
+
+    private static EndpointReport endpointReport(Histogram latency, Histogram service,
+                                                 Map<String, Long> errors, double measured) {
+        EndpointReport r = new EndpointReport();
+        r.count = service.getTotalCount();
+        r.errors = errors.values().stream().mapToLong(Long::longValue).sum();
+        r.errorCodes = errors;
+        r.throughput = r.count / measured;
+        r.latencyMs = Percentiles.of(latency);
+        r.serviceTimeMs = Percentiles.of(service);
+
+        ByteBuffer buf = ByteBuffer.allocate(latency.getNeededByteBufferCapacity());
+        int len = latency.encodeIntoCompressedByteBuffer(buf);
+        r.histogram = Base64.getEncoder().encodeToString(Arrays.copyOf(buf.array(), len));
+        return r;
+    }
+
+    private static List<Path> listCorpus(Path dir) throws IOException {
+        if (dir == null || !Files.isDirectory(dir)) {
+            throw new IOException("Corpus is not a directory: " + dir);
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        if (files.isEmpty()) throw new IOException("Corpus has no files: " + dir);
+        return files;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════
+    // CLI — "load" mode of DocScanClient.main
+    // ═══════════════════════════════════════════════════════════════════════
+
+    static final String USAGE = String.join("\n",
+        "Usage: load <corpus-dir> (--rate <ops/s> | --concurrency <n>) [options]",
+        "  --duration <s>      measured seconds (default 60)",
+        "  --warmup <s>        unrecorded warm-up seconds (default 10)",
+        "  --mix <spec>        weights, default upload=50,list=20,text=20,download=5,delete=5",
+        "  --max-in-flight <n> open-model cap on calls in flight (default 1024)",
+        "  --json <file|->     also write the report as JSON (-: stdout, text report to stderr)",
+        "  --cleanup           delete the uploaded documents at the end",
+        "  --emulator          run against an in-process DocScanEmulator",
+        "  --client-defaults   keep the client's retries, rate limiter and circuit breakers");
+
+    static void main(String[] args, String gatewayUrl, String apiKey) throws Exception {
+        Options options = new Options();
+        String jsonOut = null;
+        boolean emulate = false;
+        boolean clientDefaults = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--rate": options.rate = Double.parseDouble(args[++i]); break;
+                    case "--concurrency": options.concurrency = Integer.parseInt(args[++i]); break;
+                    case "--duration": options.duration = seconds(args[++i]); break;
+                    case "--warmup": options.warmup = seconds(args[++i]); break;
+                    case "--mix": options.mix = Options.parseMix(args[++i]); break;
+                    case "--max-in-flight": options.maxInFlight = Integer.parseInt(args[++i]); break;
+                    case "--json": jsonOut = args[++i]; break;
+                    case "--cleanup": options.cleanup = true; break;
+                    case "--emulator": emulate = true; break;
+                    case "--client-defaults": clientDefaults = true; break;
+                    default:
+                        if (arg.startsWith("--") || options.corpus != null) {
+                            throw new IllegalArgumentException("Unknown argument: " + arg);
+                        }
+                        options.corpus = Paths.get(arg);
+                }
+            }
+            if ((options.rate > 0) == (options.concurrency > 0)) {
+                throw new IllegalArgumentException("Give exactly one of --rate and --concurrency");
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage() != null ? e.getMessage() : "Missing argument value");
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        DocScanEmulator emulator = emulate ? new DocScanEmulator(0).start() : null;
+        try {
+            if (emulator != null) {
+                gatewayUrl = emulator.baseUrl();
+                apiKey = emulator.apiKey();
+            }
+            int connections = options.concurrency > 0 ? options.concurrency : options.maxInFlight;
+            DocScanTransport transport = new HttpClientTransport(10_000, connections, java.net.http.HttpClient.Version.HTTP_1_1);
+            DocScanClient client = new DocScanClient(gatewayUrl, apiKey, DocScanClient.DEFAULT_TIMEOUT_MS, transport);
+            if (!clientDefaults) {
+                // Measure the server, not the client's resilience layers
+                client.setRetryPolicy(RetryPolicy.none());
+                client.setRateLimiter(null);
+                client.setCircuitBreakers(null);
+            }
+
+            System.err.printf("Load against %s: %s, %ds warm-up + %ds%n", gatewayUrl,
+                options.rate > 0 ? options.rate + " ops/s" : options.concurrency + " workers",
+                options.warmup.getSeconds(), options.duration.getSeconds());
+            Report report = new LoadGenerator(client, options).run();
+            // With --json - stdout carries only the JSON, so it can be piped
+            PrintStream text = "-".equals(jsonOut) ? System.err : System.out;
+            text.print(report);
+            if (emulator != null) text.println(emulator.stats());
+
+            if ("-".equals(jsonOut)) {
+                System.out.println(report.toJson());
+            } else if (jsonOut != null) {
+                try (Writer w = Files.newBufferedWriter(Paths.get(jsonOut), StandardCharsets.UTF_8)) {
+                    w.write(report.toJson());
+                }
+            }
+        } finally {
+            if (emulator != null) emulator.close();
+        }
+    }
+
+    private static Duration seconds(String value) {
+        return Duration.ofMillis((long) (Double.parseDouble(value) * 1000));
+    }
+}
@@ -0,0 +1,83 @@
+package com.docupload;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * multipart/form-data body with a single "document" file part.
+ *
+ * Only the part headers and closing boundary are held in memory; the file is
+ * streamed from disk on every send, so the heap cost of an upload does not
+ * depend on the file size. The exact length is known up front, which lets
+ * transports send a fixed Content-Length instead of buffering or chunking.
+ */
+final class MultipartBody implements DocScanTransport.Body {
+
+    private final String boundary;
+    private final Path path;
+    private final long fileSize;
+    private final byte[] head;
+    private final byte[] tail;
+
+    MultipartBody(String boundary, Path path, long fileSize, String fileName, String mimeType) {
+        this.boundary = boundary;
+        this.path = path;
+        this.fileSize = fileSize;
+        this.head = ("--" + boundary + "\r\n"
+            + "Content-Disposition: form-data; name=\"document\"; filename=\"" + fileName + "\"\r\n"
+            + "Content-Type: " + mimeType + "\r\n"
+            + "\r\n").getBytes(StandardCharsets.UTF_8);
+        this.tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public long contentLength() {
+        return head.length + fileSize + tail.length;
+    }
+
+    @Override
+    public String contentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+            new ByteArrayInputStream(head),
+            Channels.newInputStream(file),
+            new ByteArrayInputStream(tail))));
+    }
+
+    /**
+     * Write the body, streaming the file part without buffering it whole.
+     * out is not a channel, so transferTo copies through the JDK's small
+     * user-space buffer; there is no sendfile here.
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(head);
+        out.flush();
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            long pos = 0;
+            while (pos < fileSize) {
+                long n = file.transferTo(pos, fileSize - pos, target);
+                if (n <= 0) throw new IOException("File shrank during upload: " + path);
+                pos += n;
+            }
+        }
+        out.write(tail);
+    }
+}
@@ -0,0 +1,82 @@
+package com.docupload;
+
+import java.io.IOException;
+
+import com.docupload.DocScanClient.Endpoint;
+import com.docupload.DocScanTransport.Request;
+import com.docupload.DocScanTransport.Response;
+
+/**
+ * Reports one request to a {@link ClientMetricsListener}: times it, counts
+ * the response bytes as the handler reads them, and delivers onRequestEnd
+ * exactly once. Listener exceptions are swallowed so metrics can never fail
+ * a call.
+ */
+final class RequestMetrics {
+
+    private final ClientMetricsListener listener;
+    private final Endpoint endpoint;
+    private final String requestId;
+    private final long bytesSent;
+    private long startNanos;
+    private int statusCode = -1;
+    private CountingInputStream body;
+    private boolean started;
+    private boolean ended;
+
+    private RequestMetrics(ClientMetricsListener listener, Endpoint endpoint, Request request) {
+        this.listener = listener;
+        this.endpoint = endpoint;
+        this.requestId = request.headers().get("X-Request-Id");
+        this.bytesSent = request.body() != null ? Math.max(request.body().contentLength(), 0) : 0;
+    }
+
+    /** A probe for request, or null when there is no listener. */
+    static RequestMetrics create(ClientMetricsListener listener, Endpoint endpoint, Request request) {
+        return listener != null ? new RequestMetrics(listener, endpoint, request) : null;
+    }
+
+    static void retry(ClientMetricsListener listener, Endpoint endpoint, Throwable cause, long delayMs) {
+        if (listener == null) return;
+        try {
+            listener.onRetry(endpoint, cause, delayMs);
+        } catch (RuntimeException ignored) {
+            // Metrics must not fail the call
+        }
+    }
+
+    void start() {
+        started = true;
+        startNanos = System.nanoTime();
+        try {
+            listener.onRequestStart(endpoint, requestId);
+        } catch (RuntimeException ignored) {
+            // Metrics must not fail the call
+        }
+    }
+
+    /** The response, with its body counted. */
+    Response received(Response res) {
+        statusCode = res.statusCode();
+        body = new CountingInputStream(res.body());
+        return new Response(statusCode, res.headers(), body, () -> {
+            try {
+                res.close();
+            } catch (IOException ignored) {
+                // The counting stream already closed the body
+            }
+        });
+    }
+
+    /** Report the end of a started request; later calls do nothing. */
+    void end(Throwable error) {
+        if (!started || ended) return;
+        ended = true;
+        try {
+            listener.onRequestEnd(endpoint, requestId, statusCode, bytesSent,
+                body != null ? body.count() : 0, System.nanoTime() - startNanos, error);
+        } catch (RuntimeException ignored) {
+            // Metrics must not fail the call
+        }
+    }
+}
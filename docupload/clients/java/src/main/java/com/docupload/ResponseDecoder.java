@@ -0,0 +1,412 @@
+package com.docupload;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.docupload.DocScanClient.DocumentInfo;
+import com.docupload.DocScanClient.DocumentList;
+import com.docupload.DocScanClient.OcrJob;
+import com.docupload.DocScanClient.UploadResult;
+
+/**
+ * Streaming decoders for successful gateway responses.
+ *
+ * Each decoder pulls tokens from the response stream with Gson's
+ * {@link JsonReader} and writes them straight into the result objects. No
+ * intermediate String or JsonObject tree is built, so a large list or
+ * extracted text is held on the heap once, and decoding starts as soon as
+ * the first bytes arrive. Unknown fields are skipped.
+ */
+final class ResponseDecoder {
+
+    private ResponseDecoder() {}
+
+    // ─── POST /v1/documents ────────────────────────────────────────────────
+
+    static UploadResult decodeUpload(InputStream in) throws IOException {
+        UploadResult result = new UploadResult();
+        result.documentId = "";
+        result.originalName = "";
+        result.mimeType = "";
+        result.category = "";
+        result.requestId = "";
+
+        try (JsonReader reader = newReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "document":
+                        readUploadDocument(reader, result);
+                        break;
+                    case "requestId":
+                        result.requestId = nextString(reader, "");
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return result;
+    }
+
+    private static void readUploadDocument(JsonReader reader, UploadResult result) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    result.documentId = nextString(reader, "");
+                    break;
+                case "originalName":
+                    result.originalName = nextString(reader, "");
+                    break;
+                case "mimeType":
+                    result.mimeType = nextString(reader, "");
+                    break;
+                case "sizeBytes":
+                    result.sizeBytes = reader.nextLong();
+                    break;
+                case "classification":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("category")) {
+                            result.category = nextString(reader, "");
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case "ocr":
+                    readUploadOcr(reader, result);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readUploadOcr(JsonReader reader, UploadResult result) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "applied":
+                    result.ocrApplied = reader.nextBoolean();
+                    break;
+                case "extractedText":
+                    result.extractedText = nextString(reader, null);
+                    break;
+                case "textFileId":
+                    result.textFileId = nextString(reader, null);
+                    break;
+                case "characterCount":
+                    result.characterCount = reader.nextInt();
+                    break;
+                case "error":
+                    result.ocrError = nextString(reader, null);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    // ─── GET /v1/documents ─────────────────────────────────────────────────
+
+    static DocumentList decodeList(InputStream in) throws IOException {
+        DocumentList list = new DocumentList();
+        list.requestId = "";
+        List<DocumentInfo> documents = new ArrayList<>();
+
+        try (JsonReader reader = newReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "documents":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            documents.add(readDocumentInfo(reader));
+                        }
+                        reader.endArray();
+                        break;
+                    case "count":
+                        list.count = reader.nextInt();
+                        break;
+                    case "nextCursor":
+                        list.nextCursor = nextString(reader, null);
+                        break;
+                    case "requestId":
+                        list.requestId = nextString(reader, "");
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        list.documents = documents.toArray(new DocumentInfo[0]);
+        return list;
+    }
+
+    static DocumentInfo readDocumentInfo(JsonReader reader) throws IOException {
+        DocumentInfo info = new DocumentInfo();
+        info.id = "";
+        info.mimeType = "";
+        info.uploadedAt = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    info.id = nextString(reader, "");
+                    break;
+                case "mimeType":
+                    info.mimeType = nextString(reader, "");
+                    break;
+                case "sizeBytes":
+                    info.sizeBytes = reader.nextLong();
+                    break;
+                case "isImage":
+                    info.isImage = reader.nextBoolean();
+                    break;
+                case "uploadedAt":
+                    info.uploadedAt = nextString(reader, "");
+                    break;
+                case "ocr":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "hasExtractedText":
+                                info.hasExtractedText = reader.nextBoolean();
+                                break;
+                            case "textFileId":
+                                info.textFileId = nextString(reader, null);
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return info;
+    }
+
+    // ─── GET /v1/documents/{id} ────────────────────────────────────────────
+
+    static DocumentInfo decodeDocument(InputStream in) throws IOException {
+        DocumentInfo info = null;
+        try (JsonReader reader = newReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("document")) {
+                    info = readDocumentInfo(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return info;
+    }
+
+    // ─── GET /v1/jobs/{id}, 202 from POST /v1/documents ────────────────────
+
+    static OcrJob decodeJob(InputStream in) throws IOException {
+        OcrJob job = null;
+        String requestId = "";
+        try (JsonReader reader = newReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "job":
+                        job = readJob(reader);
+                        break;
+                    case "requestId":
+                        requestId = nextString(reader, "");
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        if (job == null) throw new IOException("Response has no job");
+        job.requestId = requestId;
+        return job;
+    }
+
+    private static OcrJob readJob(JsonReader reader) throws IOException {
+        OcrJob job = new OcrJob();
+        job.id = "";
+        job.documentId = "";
+        job.status = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    job.id = nextString(reader, "");
+                    break;
+                case "documentId":
+                    job.documentId = nextString(reader, "");
+                    break;
+                case "status":
+                    job.status = nextString(reader, "");
+                    break;
+                case "createdAt":
+                    job.createdAt = nextString(reader, null);
+                    break;
+                case "startedAt":
+                    job.startedAt = nextString(reader, null);
+                    break;
+                case "finishedAt":
+                    job.finishedAt = nextString(reader, null);
+                    break;
+                case "textFileId":
+                    job.textFileId = nextString(reader, null);
+                    break;
+                case "characterCount":
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else {
+                        job.characterCount = reader.nextInt();
+                    }
+                    break;
+                case "error":
+                    job.error = nextString(reader, null);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return job;
+    }
+
+    // ─── Single-field responses ────────────────────────────────────────────
+
+    /** "text" of GET /v1/documents/{id}/text/preview (null if absent). */
+    static String decodeText(InputStream in) throws IOException {
+        String text = null;
+        try (JsonReader reader = newReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("text")) {
+                    text = nextString(reader, null);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return text;
+    }
+
+    /** "deleted" of DELETE /v1/documents/{id}. */
+    static boolean decodeDeleted(InputStream in) throws IOException {
+        boolean deleted = false;
+        try (JsonReader reader = newReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("deleted")) {
+                    deleted = reader.nextBoolean();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return deleted;
+    }
+
+    // ─── Server-Timing ─────────────────────────────────────────────────────
+
+    /**
+     * Metric durations (ms) of Server-Timing header values, in header order.
+     * A metric without dur counts as 0, one sent twice is summed, and one
+     * with an unreadable dur is skipped. Empty if there are no values.
+     */
+    static Map<String, Double> decodeServerTiming(List<String> values) {
+        Map<String, Double> timings = new LinkedHashMap<>();
+        if (values == null) return timings;
+        for (String value : values) {
+            for (String metric : splitUnquoted(value, ',')) {
+                List<String> params = splitUnquoted(metric, ';');
+                String name = params.get(0).trim();
+                if (name.isEmpty()) continue;
+                try {
+                    timings.merge(name, duration(params), Double::sum);
+                } catch (NumberFormatException ignored) {
+                    // Not a duration we can use
+                }
+            }
+        }
+        return timings;
+    }
+
+    private static double duration(List<String> params) {
+        for (int i = 1; i < params.size(); i++) {
+            String param = params.get(i);
+            int eq = param.indexOf('=');
+            if (eq > 0 && param.substring(0, eq).trim().equalsIgnoreCase("dur")) {
+                String dur = param.substring(eq + 1).trim();
+                if (dur.length() >= 2 && dur.startsWith("\"") && dur.endsWith("\"")) {
+                    dur = dur.substring(1, dur.length() - 1);
+                }
+                return Double.parseDouble(dur);
+            }
+        }
+        return 0;
+    }
+
+    /** Split on separator, except inside quoted strings (desc="a, b"). */
+    private static List<String> splitUnquoted(String s, char separator) {
+        List<String> parts = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (quoted && c == '\\') {
+                i++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c == separator && !quoted) {
+                parts.add(s.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(s.substring(start));
+        return parts;
+    }
+
+    // ─── Internal Helpers ──────────────────────────────────────────────────
+
+    static JsonReader newReader(InputStream in) {
+        return new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /** Next value as a string, or the fallback if it is JSON null. */
+    static String nextString(JsonReader reader, String fallback) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return fallback;
+        }
+        return reader.nextString();
+    }
+}
@@ -0,0 +1,171 @@
+package com.docupload;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpConnectTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.docupload.DocScanClient.ApiException;
+
+/**
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Retry Policy
+ * ═══════════════════════════════════════════════════════════════════════════
+ * Decides whether and when {@link DocScanClient} retries a failed call.
+ *
+ *   • Idempotent calls (GET, DELETE) are retried on I/O errors and on
+ *     429 / 502 / 503 / 504 responses.
+ *   • Uploads (POST) are retried only when the request provably never
+ *     reached the backend: the connection could not be opened, the gateway's
+ *     rate limiter rejected it (429), or the gateway could not connect to the
+ *     backend (503 BACKEND_UNAVAILABLE).
+ *   • Retry-After is honoured; otherwise the delay is capped exponential
+ *     backoff with full jitter: random(0, min(maxDelay, baseDelay * 2^n)).
+ *   • Each call has a budget — maxAttempts and a total retry time — so
+ *     retries cannot pile up and amplify an outage.
+ * ═══════════════════════════════════════════════════════════════════════════
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final Duration retryBudget;
+
+    /**
+     * @param maxAttempts  Total attempts per call, including the first (1 = no retries)
+     * @param baseDelay    Backoff before the first retry (before jitter)
+     * @param maxDelay     Cap on any single backoff
+     * @param retryBudget  Max time from the first attempt after which no retry is started
+     */
+    public RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay, Duration retryBudget) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be >= 1");
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.retryBudget = retryBudget;
+    }
+
+    /** 4 attempts, 200 ms base backoff, 10 s cap, 60 s budget per call. */
+    public static RetryPolicy defaults() {
+        return new RetryPolicy(4, Duration.ofMillis(200), Duration.ofSeconds(10), Duration.ofSeconds(60));
+    }
+
+    /** Never retry. */
+    public static RetryPolicy none() {
+        return new RetryPolicy(1, Duration.ZERO, Duration.ZERO, Duration.ZERO);
+    }
+
+    /** Start tracking the attempts of one call. */
+    Attempts start(String method) {
+        return new Attempts(isIdempotent(method));
+    }
+
+    /** Attempt state of a single call. Not thread-safe; one per call. */
+    final class Attempts {
+        private final boolean idempotent;
+        private final long startNanos = System.nanoTime();
+        private int attempt = 1;
+
+        private Attempts(boolean idempotent) {
+            this.idempotent = idempotent;
+        }
+
+        /**
+         * Record a failed attempt.
+         *
+         * @return delay in ms before the next attempt, or -1 to give up
+         */
+        long nextDelayMillis(Throwable failure) {
+            if (attempt >= maxAttempts || !isRetryable(failure, idempotent)) return -1;
+
+            long delay = failure instanceof ApiException && ((ApiException) failure).retryAfterMs >= 0
+                ? ((ApiException) failure).retryAfterMs
+                : backoffMillis(attempt);
+            long elapsed = (System.nanoTime() - startNanos) / 1_000_000;
+            if (elapsed + delay > retryBudget.toMillis()) return -1;
+
+            attempt++;
+            return delay;
+        }
+    }
+
+    // ─── Internal Helpers ──────────────────────────────────────────────────
+
+    private long backoffMillis(int attempt) {
+        long cap = maxDelay.toMillis();
+        long exp = baseDelay.toMillis() << Math.min(attempt - 1, 30);
+        long ceiling = Math.min(cap, exp < 0 ? cap : exp);
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static boolean isIdempotent(String method) {
+        switch (method) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "PUT":
+            case "DELETE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static boolean isRetryable(Throwable failure, boolean idempotent) {
+        if (failure instanceof ApiException) {
+            ApiException e = (ApiException) failure;
+            switch (e.statusCode) {
+                case 429:
+                    return true;   // rejected by the gateway's limiter before reaching the backend
+                case 503:
+                    return idempotent || "BACKEND_UNAVAILABLE".equals(e.errorCode);
+                case 502:
+                case 504:
+                    return idempotent;
+                default:
+                    return false;
+            }
+        }
+        if (failure instanceof FileNotFoundException) {
+            return false;  // local file missing
+        }
+        if (failure instanceof DocScanClient.CircuitOpenException) {
+            return false;  // failing fast on purpose
+        }
+        if (failure instanceof InterruptedIOException && !(failure instanceof SocketTimeoutException)) {
+            return false;  // caller was interrupted
+        }
+        if (failure instanceof ConnectException || failure instanceof HttpConnectTimeoutException) {
+            return true;   // connection never opened, nothing was sent
+        }
+        return idempotent && failure instanceof IOException;
+    }
+
+    /**
+     * Parse a Retry-After header (delta-seconds or HTTP-date).
+     *
+     * @return delay in ms, or -1 if absent or malformed
+     */
+    static long parseRetryAfterMillis(String value) {
+        if (value == null || value.isEmpty()) return -1;
+        try {
+            return Math.max(0, Long.parseLong(value.trim())) * 1000;
+        } catch (NumberFormatException ignored) {
+            // not delta-seconds; try HTTP-date
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.docupload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+
+/**
+ * {@link DocScanTransport} that opens one {@link HttpURLConnection} per
+ * request. Kept for environments where java.net.http is unavailable or
+ * blocked; prefer {@link HttpClientTransport} everywhere else.
+ *
+ * Request bodies are always sent in streaming mode (fixed-length when the
+ * size is known, chunked otherwise) so HttpURLConnection never buffers a
+ * whole upload on the heap.
+ */
+public class UrlConnectionTransport implements DocScanTransport {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final int connectTimeoutMs;
+
+    public UrlConnectionTransport(int connectTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) request.uri().toURL().openConnection();
+        conn.setRequestMethod(request.method());
+        request.headers().forEach(conn::setRequestProperty);
+        conn.setConnectTimeout(connectTimeoutMs);
+        if (request.timeout() != null) {
+            conn.setReadTimeout((int) request.timeout().toMillis());
+        }
+
+        Body body = request.body();
+        if (body != null) {
+            conn.setRequestProperty("Content-Type", body.contentType());
+            conn.setDoOutput(true);
+            long length = body.contentLength();
+            if (length >= 0) {
+                conn.setFixedLengthStreamingMode(length);
+            } else {
+                conn.setChunkedStreamingMode(CHUNK_SIZE);
+            }
+            try (OutputStream out = conn.getOutputStream()) {
+                body.writeTo(out);
+            }
+        }
+
+        int status = conn.getResponseCode();
+        InputStream stream;
+        try {
+            stream = conn.getInputStream();
+        } catch (IOException e) {
+            stream = conn.getErrorStream();
+        }
+        return new Response(status, conn.getHeaderFields(), stream, null);
+    }
+}
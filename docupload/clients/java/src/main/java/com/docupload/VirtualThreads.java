@@ -0,0 +1,33 @@
+package com.docupload;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-per-task executors for blocking client work.
+ *
+ * This is the Java 11 baseline, which uses daemon platform threads. The
+ * multi-release jar carries a Java 21+ version of this class (under
+ * src/main/java21) that returns virtual-thread executors instead. Callers
+ * bound concurrency themselves.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    /** True when tasks run on virtual threads. */
+    static boolean available() {
+        return false;
+    }
+
+    /** A new executor that starts one thread per task, named prefix-N. */
+    static ExecutorService newTaskExecutor(String namePrefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, namePrefix + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+}
@@ -0,0 +1,21 @@
+package com.docupload;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21+ version of {@code VirtualThreads}, packaged under
+ * META-INF/versions/21 of the multi-release jar: tasks run on virtual threads.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    static boolean available() {
+        return true;
+    }
+
+    static ExecutorService newTaskExecutor(String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix + "-", 1).factory());
+    }
+}
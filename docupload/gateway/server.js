@@ -20,11 +20,10 @@ const express = require("express");
 const cors = require("cors");
 const rateLimit = require("express-rate-limit");
 const morgan = require("morgan");
-const multer = require("multer");
 const fetch = require("node-fetch");
-const FormData = require("form-data");
 const fs = require("fs");
 const path = require("path");
+const { Transform } = require("stream");
 const { v4: uuidv4 } = require("uuid");
 
 const app = express();
@@ -33,17 +32,23 @@ const API_BACKEND = process.env.API_BACKEND_URL || "http://api:3000";
 const API_KEY = process.env.API_KEY || "docupload-dev-key-change-me";
 const RATE_LIMIT_WINDOW = parseInt(process.env.RATE_LIMIT_WINDOW_MS) || 60000;
 const RATE_LIMIT_MAX = parseInt(process.env.RATE_LIMIT_MAX) || 100;
+const MAX_UPLOAD_BYTES = (parseInt(process.env.MAX_UPLOAD_MB) || 50) * 1024 * 1024;
+// A synchronous upload waits for OCR, so it must outlast the api's OCR
+// timeout (same OCR_TIMEOUT_MS setting) plus the upload and text write.
+const OCR_TIMEOUT_MS = parseInt(process.env.OCR_TIMEOUT_MS) || 600000;
+const UPLOAD_TIMEOUT_MS = parseInt(process.env.UPLOAD_TIMEOUT_MS) || OCR_TIMEOUT_MS + 60000;
 
 // ─── Middleware: CORS ───────────────────────────────────────────────────────
 app.use(cors({
   origin: "*",
   methods: ["GET", "POST", "DELETE", "OPTIONS"],
-  allowedHeaders: ["Content-Type", "X-API-Key", "X-Request-Id", "Accept"],
-  exposedHeaders: ["X-Request-Id", "X-RateLimit-Limit", "X-RateLimit-Remaining"],
+  allowedHeaders: ["Content-Type", "X-API-Key", "X-Request-Id", "Accept", "Prefer"],
+  exposedHeaders: ["X-Request-Id", "X-RateLimit-Limit", "X-RateLimit-Remaining", "Location", "Server-Timing"],
 }));
 
 // ─── Middleware: Request ID ─────────────────────────────────────────────────
 app.use((req, res, next) => {
+  req.startedAt = process.hrtime.bigint();
   req.requestId = req.headers["x-request-id"] || uuidv4();
   res.setHeader("X-Request-Id", req.requestId);
   next();
@@ -109,11 +114,35 @@ function authenticateApiKey(req, res, next) {
 }
 app.use("/v1/", authenticateApiKey);
 
-// ─── Multer for multipart uploads ──────────────────────────────────────────
-const upload = multer({
-  storage: multer.memoryStorage(),
-  limits: { fileSize: 50 * 1024 * 1024 },
-});
+// ─── Upload streaming ──────────────────────────────────────────────────────
+// Uploads are not parsed or buffered here: the client's multipart body is
+// piped to the backend as it arrives, so memory per upload stays constant.
+// Auth and rate limiting only need headers and run before any body is read.
+// The size limit is checked against Content-Length up front and enforced on
+// the bytes actually streamed (chunked bodies); the backend parses the form,
+// enforcing the exact per-file limit.
+const MULTIPART_OVERHEAD_BYTES = 64 * 1024;
+const MAX_UPLOAD_BODY_BYTES = MAX_UPLOAD_BYTES + MULTIPART_OVERHEAD_BYTES;
+
+function byteLimit(limit, onExceeded) {
+  let seen = 0;
+  return new Transform({
+    transform(chunk, encoding, callback) {
+      seen += chunk.length;
+      if (seen > limit) {
+        onExceeded();
+        return callback();
+      }
+      callback(null, chunk);
+    },
+  });
+}
+
+function fileTooLarge(res, requestId) {
+  res.setHeader("Connection", "close");
+  return errorResponse(res, 413, "FILE_TOO_LARGE",
+    `File exceeds the ${MAX_UPLOAD_BYTES / (1024 * 1024)} MB limit.`, requestId);
+}
 
 // ─── Helper: Error envelope ────────────────────────────────────────────────
 function errorResponse(res, status, code, message, requestId) {
@@ -122,6 +151,80 @@ function errorResponse(res, status, code, message, requestId) {
   });
 }
 
+// ─── Helper: Backend failure ───────────────────────────────────────────────
+// Connection-level failures mean the request never reached the backend, so
+// clients may safely retry it (even an upload). Anything else stays a 500.
+const BACKEND_DOWN_CODES = ["ECONNREFUSED", "ENOTFOUND", "EAI_AGAIN", "EHOSTUNREACH"];
+
+function backendFailure(res, err, message, requestId) {
+  if (BACKEND_DOWN_CODES.includes(err.code)) {
+    res.setHeader("Retry-After", "1");
+    return errorResponse(res, 503, "BACKEND_UNAVAILABLE", "Backend service is unavailable.", requestId);
+  }
+  return errorResponse(res, 500, "INTERNAL_ERROR", message, requestId);
+}
+
+// ─── Helper: Server-Timing ─────────────────────────────────────────────────
+// Upload responses carry the stage timings of every hop: the backend's
+// Server-Timing (OCR service stages, then api-*) followed by the gateway's
+// own gw-* metrics. Durations are in milliseconds.
+function timingMetric(name, ms, desc) {
+  return `${name};dur=${ms.toFixed(1)}` + (desc ? `;desc="${desc}"` : "");
+}
+
+function msSince(start) {
+  return Number(process.hrtime.bigint() - start) / 1e6;
+}
+
+function setServerTiming(req, res, backendRes, backendMs) {
+  res.setHeader("Server-Timing", [
+    backendRes.headers.get("server-timing"),
+    timingMetric("gw-backend", backendMs, "api round trip"),
+    timingMetric("gw-total", msSince(req.startedAt)),
+  ].filter(Boolean).join(", "));
+}
+
+// ─── Helper: Backend file → document list item ─────────────────────────────
+function toDocumentListItem(f) {
+  return {
+    id: f.filename,
+    mimeType: f.mimeType,
+    sizeBytes: f.size,
+    isImage: f.isImage,
+    uploadedAt: f.uploadedAt,
+    ocr: {
+      hasExtractedText: f.hasExtractedText,
+      textFileId: f.textFile,
+    },
+    links: {
+      downloadOriginal: `/v1/documents/${encodeURIComponent(f.filename)}/download`,
+      downloadText: f.textFile ? `/v1/documents/${encodeURIComponent(f.filename)}/text` : null,
+      delete: `/v1/documents/${encodeURIComponent(f.filename)}`,
+    }
+  };
+}
+
+// ─── Helper: Backend job → OCR job resource ────────────────────────────────
+function toJob(job) {
+  const id = encodeURIComponent(job.id);
+  return {
+    id: job.id,
+    documentId: job.id,
+    status: job.status,
+    createdAt: job.createdAt,
+    startedAt: job.startedAt,
+    finishedAt: job.finishedAt,
+    textFileId: job.textFile || null,
+    characterCount: job.characterCount,
+    error: job.error || null,
+    links: {
+      self: `/v1/jobs/${id}`,
+      document: `/v1/documents/${id}`,
+      textPreview: job.textFile ? `/v1/documents/${id}/text/preview` : null,
+    },
+  };
+}
+
 // ═══════════════════════════════════════════════════════════════════════════════
 // VERSIONED API ROUTES: /v1/*
 // ═══════════════════════════════════════════════════════════════════════════════
@@ -133,7 +236,7 @@ app.get("/v1/health", async (req, res) => {
     const backendRes = await fetch(`${API_BACKEND}/api/health`, { timeout: 5000 });
     const backendData = await backendRes.json();
     res.json({
-      status: "ok",
+      status: backendData.status === "ok" ? "ok" : "degraded",
       gateway: { version: "1.0.0", timestamp: new Date().toISOString() },
       backend: backendData,
       requestId: req.requestId,
@@ -151,27 +254,58 @@ app.get("/v1/health", async (req, res) => {
 // ─── POST /v1/documents ─────────────────────────────────────────────────────
 // Upload a document. Accepts multipart/form-data with field "document".
 // Returns document metadata, type detection, and OCR results.
-app.post("/v1/documents", upload.single("document"), async (req, res) => {
-  try {
-    if (!req.file) {
-      return errorResponse(res, 400, "NO_FILE", "Request must include a 'document' field with a file.", req.requestId);
-    }
+//
+// Async mode (?async=true or "Prefer: respond-async"): returns 202 as soon as
+// the file is stored, with a job to follow at /v1/jobs/{id} (Location header)
+// while OCR runs in the background.
+app.post("/v1/documents", async (req, res) => {
+  const contentType = req.headers["content-type"] || "";
+  if (!/^multipart\/form-data\b/i.test(contentType)) {
+    return errorResponse(res, 400, "NO_FILE", "Request must include a 'document' field with a file.", req.requestId);
+  }
+  if (parseInt(req.headers["content-length"]) > MAX_UPLOAD_BODY_BYTES) {
+    return fileTooLarge(res, req.requestId);
+  }
 
-    // Forward the file to the internal API
-    const form = new FormData();
-    form.append("document", req.file.buffer, {
-      filename: req.file.originalname,
-      contentType: req.file.mimetype,
-    });
+  // Stream the body through to the internal API; stop as soon as it grows
+  // past the limit or the client goes away
+  const abort = new AbortController();
+  let tooLarge = false;
+  const body = req.pipe(byteLimit(MAX_UPLOAD_BODY_BYTES, () => {
+    tooLarge = true;
+    abort.abort();
+  }));
+  req.on("aborted", () => abort.abort());
 
-    const backendRes = await fetch(`${API_BACKEND}/api/upload`, {
+  const headers = { "Content-Type": contentType };
+  if (req.headers["content-length"]) headers["Content-Length"] = req.headers["content-length"];
+
+  try {
+    const asyncMode = req.query.async === "true" || /\brespond-async\b/.test(req.headers.prefer || "");
+    const backendStart = process.hrtime.bigint();
+    const backendRes = await fetch(`${API_BACKEND}/api/upload${asyncMode ? "?async=true" : ""}`, {
       method: "POST",
-      body: form,
-      headers: form.getHeaders(),
-      timeout: 120000,
+      body,
+      headers,
+      signal: abort.signal,
+      timeout: UPLOAD_TIMEOUT_MS,
     });
 
     const data = await backendRes.json();
+    const backendMs = msSince(backendStart);
+
+    if (backendRes.status === 400) {
+      return errorResponse(res, 400, "NO_FILE", data.error || "Request must include a 'document' field with a file.", req.requestId);
+    }
+    if (backendRes.status === 413) {
+      return fileTooLarge(res, req.requestId);
+    }
+
+    // OCR at capacity: the backend undid the upload, so it is safe to resend
+    if (backendRes.status === 503 && data.overloaded) {
+      res.setHeader("Retry-After", backendRes.headers.get("retry-after") || "1");
+      return errorResponse(res, 503, "BACKEND_UNAVAILABLE", "OCR capacity is exhausted; retry later.", req.requestId);
+    }
 
     if (!backendRes.ok) {
       return errorResponse(res, backendRes.status, "UPLOAD_FAILED", data.error || "Upload failed.", req.requestId);
@@ -206,44 +340,111 @@ app.post("/v1/documents", upload.single("document"), async (req, res) => {
       requestId: req.requestId,
     };
 
+    setServerTiming(req, res, backendRes, backendMs);
+    if (backendRes.status === 202 && data.job) {
+      response.job = toJob(data.job);
+      res.setHeader("Location", response.job.links.self);
+      return res.status(202).json(response);
+    }
     res.status(201).json(response);
   } catch (err) {
+    if (tooLarge) return fileTooLarge(res, req.requestId);
+    if (req.aborted) return;
     console.error(`[Gateway] Upload error: ${err.message}`);
-    errorResponse(res, 500, "INTERNAL_ERROR", "An unexpected error occurred.", req.requestId);
+    backendFailure(res, err, "An unexpected error occurred.", req.requestId);
+  }
+});
+
+// ─── GET /v1/jobs/:id ───────────────────────────────────────────────────────
+// Status of an async OCR job. ?wait=S (max 30) long-polls: the response is
+// held until the job finishes or S seconds pass.
+const MAX_JOB_WAIT_S = 30;
+
+app.get("/v1/jobs/:id", async (req, res) => {
+  try {
+    const waitS = Math.min(Math.max(parseFloat(req.query.wait) || 0, 0), MAX_JOB_WAIT_S);
+    const backendRes = await fetch(
+      `${API_BACKEND}/api/jobs/${encodeURIComponent(req.params.id)}?wait=${waitS}`,
+      { timeout: waitS * 1000 + 10000 }
+    );
+    if (backendRes.status === 404) {
+      return errorResponse(res, 404, "NOT_FOUND", "Job not found.", req.requestId);
+    }
+    // Anything else is a backend problem, not a missing job: pollers should retry
+    if (backendRes.status === 503) {
+      res.setHeader("Retry-After", backendRes.headers.get("retry-after") || "1");
+      return errorResponse(res, 503, "BACKEND_UNAVAILABLE", "Backend service is unavailable.", req.requestId);
+    }
+    if (!backendRes.ok) {
+      return errorResponse(res, 500, "INTERNAL_ERROR", "Job lookup failed.", req.requestId);
+    }
+    const data = await backendRes.json();
+    res.json({
+      job: toJob(data.job),
+      requestId: req.requestId,
+    });
+  } catch (err) {
+    backendFailure(res, err, "Job lookup failed.", req.requestId);
   }
 });
 
 // ─── GET /v1/documents ──────────────────────────────────────────────────────
-// List all uploaded documents with metadata.
+// List uploaded documents with metadata, newest first.
+// Optional cursor pagination: ?limit=N returns at most N documents and a
+// nextCursor; pass it back as ?cursor= for the next page. nextCursor is null
+// on the last page. Without limit, all documents are returned.
+// Optional filters: ?mimeType=, ?isImage=true|false, ?hasText=true|false.
+const LIST_PARAMS = ["limit", "cursor", "mimeType", "isImage", "hasText"];
+
 app.get("/v1/documents", async (req, res) => {
   try {
-    const backendRes = await fetch(`${API_BACKEND}/api/files`, { timeout: 10000 });
+    const query = new URLSearchParams();
+    for (const name of LIST_PARAMS) {
+      if (req.query[name] !== undefined) query.set(name, String(req.query[name]));
+    }
+    const qs = query.toString();
+
+    const backendRes = await fetch(`${API_BACKEND}/api/files${qs ? "?" + qs : ""}`, { timeout: 10000 });
     const data = await backendRes.json();
 
-    const documents = (data.files || []).map((f) => ({
-      id: f.filename,
-      mimeType: f.mimeType,
-      sizeBytes: f.size,
-      isImage: f.isImage,
-      uploadedAt: f.uploadedAt,
-      ocr: {
-        hasExtractedText: f.hasExtractedText,
-        textFileId: f.textFile,
-      },
-      links: {
-        downloadOriginal: `/v1/documents/${encodeURIComponent(f.filename)}/download`,
-        downloadText: f.textFile ? `/v1/documents/${encodeURIComponent(f.filename)}/text` : null,
-        delete: `/v1/documents/${encodeURIComponent(f.filename)}`,
-      }
-    }));
+    if (backendRes.status === 400) {
+      return errorResponse(res, 400, "INVALID_QUERY", data.error || "Invalid limit, cursor or filter.", req.requestId);
+    }
+    if (!backendRes.ok) {
+      return errorResponse(res, 500, "INTERNAL_ERROR", data.error || "Failed to list documents.", req.requestId);
+    }
+
+    const documents = (data.files || []).map(toDocumentListItem);
 
     res.json({
       documents,
       count: documents.length,
+      nextCursor: data.nextCursor || null,
+      requestId: req.requestId,
+    });
+  } catch (err) {
+    backendFailure(res, err, "Failed to list documents.", req.requestId);
+  }
+});
+
+// ─── GET /v1/documents/:id ──────────────────────────────────────────────────
+// Metadata of a single document.
+app.get("/v1/documents/:id", async (req, res) => {
+  try {
+    const backendRes = await fetch(
+      `${API_BACKEND}/api/files/meta/${encodeURIComponent(req.params.id)}`,
+      { timeout: 10000 }
+    );
+    if (!backendRes.ok) {
+      return errorResponse(res, 404, "NOT_FOUND", "Document not found.", req.requestId);
+    }
+    const data = await backendRes.json();
+    res.json({
+      document: toDocumentListItem(data.file),
       requestId: req.requestId,
     });
   } catch (err) {
-    errorResponse(res, 500, "INTERNAL_ERROR", "Failed to list documents.", req.requestId);
+    backendFailure(res, err, "Failed to look up document.", req.requestId);
   }
 });
 
@@ -263,7 +464,7 @@ app.get("/v1/documents/:id/download", async (req, res) => {
     res.setHeader("Content-Disposition", backendRes.headers.get("content-disposition") || "attachment");
     backendRes.body.pipe(res);
   } catch (err) {
-    errorResponse(res, 500, "INTERNAL_ERROR", "Download failed.", req.requestId);
+    backendFailure(res, err, "Download failed.", req.requestId);
   }
 });
 
@@ -286,7 +487,7 @@ app.get("/v1/documents/:id/text", async (req, res) => {
     res.setHeader("Content-Disposition", `attachment; filename="${textFile}"`);
     backendRes.body.pipe(res);
   } catch (err) {
-    errorResponse(res, 500, "INTERNAL_ERROR", "Text download failed.", req.requestId);
+    backendFailure(res, err, "Text download failed.", req.requestId);
   }
 });
 
@@ -312,7 +513,7 @@ app.get("/v1/documents/:id/text/preview", async (req, res) => {
       requestId: req.requestId,
     });
   } catch (err) {
-    errorResponse(res, 500, "INTERNAL_ERROR", "Text preview failed.", req.requestId);
+    backendFailure(res, err, "Text preview failed.", req.requestId);
   }
 });
 
@@ -333,7 +534,7 @@ app.delete("/v1/documents/:id", async (req, res) => {
       requestId: req.requestId,
     });
   } catch (err) {
-    errorResponse(res, 500, "INTERNAL_ERROR", "Delete failed.", req.requestId);
+    backendFailure(res, err, "Delete failed.", req.requestId);
   }
 });
 
@@ -363,8 +564,10 @@ app.get("/", (req, res) => {
     docs: "/v1/docs",
     health: "/v1/health",
     endpoints: {
-      "POST /v1/documents":              "Upload a document (multipart/form-data)",
-      "GET  /v1/documents":              "List all documents",
+      "POST /v1/documents":              "Upload a document (multipart/form-data; ?async=true for background OCR)",
+      "GET  /v1/jobs/:id":               "OCR job status (?wait=S to long-poll)",
+      "GET  /v1/documents":              "List documents (?limit=&cursor= to paginate)",
+      "GET  /v1/documents/:id":          "Get document metadata",
       "GET  /v1/documents/:id/download": "Download original file",
       "GET  /v1/documents/:id/text":     "Download extracted text",
       "GET  /v1/documents/:id/text/preview": "Get extracted text as JSON",
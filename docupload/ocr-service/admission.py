@@ -0,0 +1,159 @@
+"""
+Serving limits and admission control for the OCR service.
+
+Each gunicorn process runs OCR on threads (gthread workers); Tesseract and
+poppler release the GIL, so one process keeps every core it is given busy.
+The process's CPUs are split evenly between its OCR_WORKERS siblings, and
+everything else is sized from that share:
+
+  • at most `max_active` requests run OCR at once (default: CPU share)
+  • at most `max_queued` more wait for a slot, in arrival order
+    (default: twice the CPU share), for up to `queue_timeout_s`
+  • anything beyond that is refused at once with Overloaded, which the app
+    turns into 503 + Retry-After, instead of waiting unseen in the socket
+    backlog until the caller times out
+
+gunicorn.conf.py sizes the thread count from the same numbers, so a queued
+request always has a thread to wait on and health checks always get through.
+"""
+
+import math
+import os
+import threading
+import time
+from collections import deque
+
+
+def available_cpus():
+    """CPUs this process may run on (respects container CPU sets)."""
+    try:
+        return len(os.sched_getaffinity(0))
+    except AttributeError:
+        return os.cpu_count() or 1
+
+
+def process_count():
+    return max(1, int(os.environ.get('OCR_WORKERS', 1)))
+
+
+def cpu_share():
+    """CPUs available to each of the OCR_WORKERS processes."""
+    return max(1, available_cpus() // process_count())
+
+
+def serving_limits():
+    """(max_active, max_queued, queue_timeout_s) for one process."""
+    share = cpu_share()
+    max_active = int(os.environ.get('OCR_MAX_ACTIVE', 0)) or share
+    max_queued = int(os.environ.get('OCR_QUEUE_SIZE', -1))
+    if max_queued < 0:
+        max_queued = 2 * share
+    queue_timeout_s = float(os.environ.get('OCR_QUEUE_TIMEOUT_S', 30))
+    return max_active, max_queued, queue_timeout_s
+
+
+class Overloaded(Exception):
+    """No OCR slot is available; retry after `retry_after` seconds."""
+
+    def __init__(self, message, retry_after):
+        super().__init__(message)
+        self.retry_after = retry_after
+
+
+class AdmissionQueue:
+    # Weight of the newest sample in the moving averages
+    EWMA_ALPHA = 0.2
+
+    def __init__(self, max_active, max_queued, queue_timeout_s):
+        self.max_active = max_active
+        self.max_queued = max_queued
+        self.queue_timeout_s = queue_timeout_s
+        self.cond = threading.Condition()
+        self.active = 0
+        self.waiting = deque()      # tickets of queued requests, oldest first
+        self.admitted = 0
+        self.rejected = 0
+        self.timed_out = 0
+        self.avg_wait_s = 0.0
+        self.max_wait_s = 0.0
+        self.avg_service_s = None
+
+    def acquire(self):
+        """
+        Wait for an OCR slot. Returns the seconds spent queued; raises
+        Overloaded if the queue is full or the wait exceeds the timeout.
+        """
+        with self.cond:
+            if self.active < self.max_active and not self.waiting:
+                self.active += 1
+                self._record_wait(0.0)
+                return 0.0
+            if len(self.waiting) >= self.max_queued:
+                self.rejected += 1
+                raise Overloaded('OCR queue is full', self._retry_after())
+
+            ticket = object()
+            self.waiting.append(ticket)
+            started = time.monotonic()
+            deadline = started + self.queue_timeout_s
+            try:
+                while self.waiting[0] is not ticket or self.active >= self.max_active:
+                    remaining = deadline - time.monotonic()
+                    if remaining <= 0:
+                        self.timed_out += 1
+                        raise Overloaded(
+                            f'Waited {self.queue_timeout_s:g}s for an OCR slot',
+                            self._retry_after()
+                        )
+                    self.cond.wait(remaining)
+            except BaseException:
+                self.waiting.remove(ticket)
+                self.cond.notify_all()
+                raise
+
+            self.waiting.popleft()
+            self.active += 1
+            waited = time.monotonic() - started
+            self._record_wait(waited)
+            self.cond.notify_all()    # the next in line may also have a slot
+            return waited
+
+    def release(self, service_s):
+        """Give the slot back; service_s is how long the OCR itself took."""
+        with self.cond:
+            self.active -= 1
+            if self.avg_service_s is None:
+                self.avg_service_s = service_s
+            else:
+                self.avg_service_s += self.EWMA_ALPHA * (service_s - self.avg_service_s)
+            self.cond.notify_all()
+
+    def stats(self):
+        with self.cond:
+            return {
+                'active': self.active,
+                'queued': len(self.waiting),
+                'maxActive': self.max_active,
+                'maxQueued': self.max_queued,
+                'queueTimeoutSeconds': self.queue_timeout_s,
+                'admitted': self.admitted,
+                'rejected': self.rejected,
+                'timedOut': self.timed_out,
+                'avgWaitMs': round(self.avg_wait_s * 1000),
+                'maxWaitMs': round(self.max_wait_s * 1000),
+                'avgServiceMs': round(self.avg_service_s * 1000) if self.avg_service_s is not None else None,
+                'retryAfterSeconds': self._retry_after(),
+            }
+
+    # ─── Internal Helpers ───
+
+    def _record_wait(self, waited):
+        self.admitted += 1
+        self.avg_wait_s += self.EWMA_ALPHA * (waited - self.avg_wait_s)
+        self.max_wait_s = max(self.max_wait_s, waited)
+
+    def _retry_after(self):
+        """Seconds until the current queue has likely drained (1-60)."""
+        service_s = self.avg_service_s if self.avg_service_s is not None else 1.0
+        backlog = len(self.waiting) + self.active
+        return min(60, max(1, math.ceil(service_s * backlog / self.max_active)))
@@ -1,8 +1,21 @@
 import os
+import re
+import shutil
 import tempfile
 import subprocess
+import time
+from collections import deque
+from concurrent.futures import Future, ThreadPoolExecutor
 from flask import Flask, request, jsonify
 
+# Must be set before libtesseract is loaded in-process (see PAGE_WORKERS below)
+os.environ.setdefault('OMP_THREAD_LIMIT', '1')
+
+from admission import AdmissionQueue, Overloaded, cpu_share, serving_limits
+from engines import EngineError, EnginePool
+from ocr_cache import OcrCache, content_key
+from timing import Timings
+
 app = Flask(__name__)
 
 ALLOWED_EXTENSIONS = {
@@ -10,16 +23,102 @@ ALLOWED_EXTENSIONS = {
 }
 
 
+# All recognition runs on this pool: PDF pages in parallel, and uploaded
+# images too, each by a warm in-process Tesseract engine (see engines.py; the
+# tesseract CLI is the fallback). The pool is shared by all requests in this
+# process, so concurrent PDFs and images queue for it instead of multiplying
+# Tesseract runs, and at most PAGE_WORKERS run at once per process. Each
+# engine runs single-threaded (OMP_THREAD_LIMIT=1): page-level parallelism
+# scales better than OpenMP inside one page, and the two together would
+# oversubscribe the CPU. With several gunicorn processes (OCR_WORKERS) each
+# gets its share of the CPUs.
+PAGE_WORKERS = int(os.environ.get('OCR_PAGE_WORKERS', 0)) or cpu_share()
+page_pool = ThreadPoolExecutor(max_workers=PAGE_WORKERS, thread_name_prefix='ocr-page')
+
+TESSERACT_ENV = dict(os.environ)
+
+# Images are recognised by warm in-process engines (engines.py), one pool per
+# language sized like the page pool; the tesseract CLI is the fallback when
+# tesserocr is missing, an engine fails, or OCR_ENGINE=subprocess.
+OCR_ENGINE = os.environ.get('OCR_ENGINE', 'auto')
+DEFAULT_LANG = os.environ.get('OCR_LANG', 'eng')
+LANG_PATTERN = re.compile(r'^[A-Za-z_]+(\+[A-Za-z_]+)*$')
+engines = EnginePool(PAGE_WORKERS)
+use_engines = OCR_ENGINE != 'subprocess' and engines.available
+# Requests that miss the cache wait here for an OCR slot; a full queue is
+# answered with 503 + Retry-After (see admission.py).
+admission = AdmissionQueue(*serving_limits())
+
+# PDFs are rasterised a batch of pages at a time, and each batch is OCR'd
+# while the next one is rasterised. At most two batches of page images exist
+# on disk per request, whatever the page count. Time budgets apply per page.
+PDF_DPI = int(os.environ.get('PDF_DPI', 300))
+PDF_PAGE_BATCH = int(os.environ.get('PDF_PAGE_BATCH', 0)) or PAGE_WORKERS
+RASTER_TIMEOUT_PER_PAGE = int(os.environ.get('PDF_RASTER_TIMEOUT_PER_PAGE_S', 60))
+OCR_TIMEOUT_PER_PAGE = int(os.environ.get('OCR_TIMEOUT_PER_PAGE_S', 120))
+
+# Born-digital PDF pages carry a text layer; it is extracted with pdftotext
+# and only pages without one (scans) are rasterised and OCR'd. A page counts
+# as having a text layer when it yields at least this many non-space chars.
+PDF_TEXT_LAYER = os.environ.get('PDF_TEXT_LAYER', '1') != '0'
+PDF_TEXT_LAYER_MIN_CHARS = int(os.environ.get('PDF_TEXT_LAYER_MIN_CHARS', 16))
+
+
+# Results are cached by SHA-256 of the input plus every option that changes
+# the output; bump CACHE_VERSION when the OCR pipeline itself changes.
+CACHE_VERSION = 2
+ocr_cache = OcrCache(
+    os.environ.get('OCR_CACHE_DIR', '/app/cache'),
+    int(float(os.environ.get('OCR_CACHE_MAX_MB', 512)) * 1024 * 1024),
+)
+
+
+def cache_options(ext, lang):
+    kind = 'pdf' if ext == 'pdf' else 'image'
+    return (f"v{CACHE_VERSION}|{kind}|lang={lang}|oem=3|psm=3|dpi={PDF_DPI}"
+            f"|textlayer={int(PDF_TEXT_LAYER)}:{PDF_TEXT_LAYER_MIN_CHARS}")
+
+
+# Zero-copy handoff: with the api's uploads volume mounted read-only at
+# OCR_SHARED_DIR, a caller may name a stored original (form field
+# `document`) instead of uploading its bytes; it is OCR'd in place.
+SHARED_DIR = os.environ.get('OCR_SHARED_DIR', '')
+
+
+def shared_file(name):
+    """Path of a stored original under SHARED_DIR, or None if there is none."""
+    if name != os.path.basename(name) or name.startswith('.'):
+        return None
+    path = os.path.join(SHARED_DIR, name)
+    return path if os.path.isfile(path) else None
+
+
+def has_errors(text):
+    return '[OCR Error]' in text or '[PDF Error]' in text
+
+
 def allowed_file(filename):
     return '.' in filename and filename.rsplit('.', 1)[1].lower() in ALLOWED_EXTENSIONS
 
 
-def ocr_image(filepath):
+def ocr_image(filepath, lang=DEFAULT_LANG):
     """Run Tesseract OCR on an image file."""
+    if use_engines:
+        try:
+            return engines.recognise(filepath, lang, OCR_TIMEOUT_PER_PAGE).strip()
+        except TimeoutError:
+            return "[OCR Error] Processing timed out"
+        except EngineError as e:
+            print(f"[OCR] Engine failed on {os.path.basename(filepath)}, using CLI: {e}", flush=True)
+    return ocr_image_cli(filepath, lang)
+
+
+def ocr_image_cli(filepath, lang=DEFAULT_LANG):
+    """Run the tesseract CLI on an image file (one process per image)."""
     try:
         result = subprocess.run(
-            ['tesseract', filepath, 'stdout', '--oem', '3', '--psm', '3'],
-            capture_output=True, text=True, timeout=120
+            ['tesseract', filepath, 'stdout', '-l', lang, '--oem', '3', '--psm', '3'],
+            capture_output=True, text=True, timeout=OCR_TIMEOUT_PER_PAGE, env=TESSERACT_ENV
         )
         if result.returncode == 0:
             return result.stdout.strip()
@@ -31,68 +130,265 @@ def ocr_image(filepath):
         return f"[OCR Error] {str(e)}"
 
 
-def ocr_pdf(filepath):
-    """Convert PDF pages to images, then OCR each page."""
-    text_parts = []
-    with tempfile.TemporaryDirectory() as tmpdir:
-        # Convert PDF to images using pdftoppm (poppler)
+def pdf_page_count(filepath):
+    """Number of pages, from pdfinfo."""
+    result = subprocess.run(
+        ['pdfinfo', filepath], capture_output=True, text=True, timeout=30, check=True
+    )
+    match = re.search(r'^Pages:\s+(\d+)', result.stdout, re.MULTILINE)
+    if not match:
+        raise ValueError('pdfinfo reported no page count')
+    return int(match.group(1))
+
+
+def extract_text_layer(filepath, page_count):
+    """
+    Embedded text of each page that has a usable text layer: {page: text}.
+    Returns {} if the PDF has none or pdftotext fails.
+    """
+    if not PDF_TEXT_LAYER:
+        return {}
+    try:
+        result = subprocess.run(
+            ['pdftotext', '-layout', '-enc', 'UTF-8', filepath, '-'],
+            capture_output=True, check=True, timeout=30 + page_count
+        )
+    except (subprocess.CalledProcessError, subprocess.TimeoutExpired, OSError):
+        return {}
+
+    # pdftotext ends every page with a form feed
+    pages = result.stdout.decode('utf-8', errors='replace').split('\f')
+    layer = {}
+    for page, text in enumerate(pages[:page_count], 1):
+        if len(''.join(text.split())) >= PDF_TEXT_LAYER_MIN_CHARS:
+            layer[page] = text.strip('\n').rstrip()
+    return layer
+
+
+def page_ranges(pages, max_len):
+    """Split sorted page numbers into contiguous (first, last) runs of at most max_len."""
+    ranges = []
+    for page in pages:
+        if ranges and page == ranges[-1][1] + 1 and page - ranges[-1][0] < max_len:
+            ranges[-1][1] = page
+        else:
+            ranges.append([page, page])
+    return [tuple(r) for r in ranges]
+
+
+def rasterise(filepath, first, last, outdir):
+    """
+    Render pages first..last to PNGs in outdir.
+    Returns {page: png path}; raises on failure or timeout.
+    """
+    prefix = os.path.join(outdir, 'page')
+    subprocess.run(
+        ['pdftoppm', '-png', '-r', str(PDF_DPI), '-f', str(first), '-l', str(last),
+         filepath, prefix],
+        capture_output=True, check=True,
+        timeout=RASTER_TIMEOUT_PER_PAGE * (last - first + 1)
+    )
+    pages = {}
+    for name in os.listdir(outdir):
+        match = re.search(r'-(\d+)\.png$', name)
+        if match:
+            pages[int(match.group(1))] = os.path.join(outdir, name)
+    return pages
+
+
+def rasterise_batch(filepath, first, last, outdir):
+    """
+    Render a batch of pages. If the batch fails, retry page by page so one
+    bad page only costs itself. Returns ({page: png path}, {page: error}).
+    """
+    try:
+        return rasterise(filepath, first, last, outdir), {}
+    except (subprocess.CalledProcessError, subprocess.TimeoutExpired):
+        pass
+
+    images, errors = {}, {}
+    for page in range(first, last + 1):
+        page_dir = os.path.join(outdir, f'p{page}')
+        os.mkdir(page_dir)
         try:
-            subprocess.run(
-                ['pdftoppm', '-png', '-r', '300', filepath,
-                 os.path.join(tmpdir, 'page')],
-                capture_output=True, timeout=120, check=True
-            )
-        except (subprocess.CalledProcessError, subprocess.TimeoutExpired) as e:
-            return f"[PDF Error] Could not convert PDF: {str(e)}"
-
-        # OCR each page image
-        page_images = sorted([
-            f for f in os.listdir(tmpdir) if f.endswith('.png')
-        ])
-
-        for i, img_name in enumerate(page_images, 1):
-            img_path = os.path.join(tmpdir, img_name)
-            page_text = ocr_image(img_path)
-            text_parts.append(f"--- Page {i} ---\n{page_text}")
+            images.update(rasterise(filepath, page, page, page_dir))
+        except subprocess.TimeoutExpired:
+            errors[page] = f"[PDF Error] Page {page} timed out after {RASTER_TIMEOUT_PER_PAGE}s"
+        except subprocess.CalledProcessError as e:
+            reason = (e.stderr or b'').decode(errors='replace').strip() or f"exit status {e.returncode}"
+            errors[page] = f"[PDF Error] Could not convert page {page}: {reason}"
+    return images, errors
+
+
+def ocr_image_file(filepath, lang, timings):
+    """OCR one image on the page pool, timed as the recognise stage."""
+    with timings.stage('recognise'):
+        return ocr_image(filepath, lang)
+
+
+def ocr_page_file(png_path, lang, timings):
+    """OCR one rendered page, then delete its image to free temp space."""
+    try:
+        return ocr_image_file(png_path, lang, timings)
+    finally:
+        os.unlink(png_path)
+
+
+def done(value):
+    future = Future()
+    future.set_result(value)
+    return future
+
+
+def ocr_pdf(filepath, lang=DEFAULT_LANG, timings=None):
+    """
+    Extract a PDF's text: pages with a text layer are read directly; the
+    rest are rasterised and OCR'd as a pipeline (while one batch of pages is
+    being OCR'd on the page pool, the next batch is rasterised). Stages are
+    timed into `timings`: pdfinfo, textlayer, raster and recognise (per page).
+    """
+    timings = timings or Timings('ocr')
+    try:
+        with timings.stage('pdfinfo'):
+            page_count = pdf_page_count(filepath)
+    except (subprocess.CalledProcessError, subprocess.TimeoutExpired, ValueError) as e:
+        return f"[PDF Error] Could not read PDF: {str(e)}"
+
+    with timings.stage('textlayer'):
+        text_layer = extract_text_layer(filepath, page_count)
+    results = {page: done(text) for page, text in text_layer.items()}
+    scanned = [page for page in range(1, page_count + 1) if page not in text_layer]
+
+    batches = deque()     # (batch dir, futures) still being OCR'd
+    with tempfile.TemporaryDirectory() as tmpdir:
+        for first, last in page_ranges(scanned, PDF_PAGE_BATCH):
+
+            # Bound temp space: the previous batch may still be OCR'ing while
+            # this one renders; anything older must finish first.
+            while len(batches) > 1:
+                finish_batch(*batches.popleft())
+
+            batch_dir = os.path.join(tmpdir, f'{first}-{last}')
+            os.mkdir(batch_dir)
+            with timings.stage('raster'):
+                images, errors = rasterise_batch(filepath, first, last, batch_dir)
+
+            futures = []
+            for page in range(first, last + 1):
+                if page in images:
+                    results[page] = page_pool.submit(ocr_page_file, images[page], lang, timings)
+                else:
+                    results[page] = done(errors.get(page, f"[PDF Error] Page {page} was not rendered"))
+                futures.append(results[page])
+            batches.append((batch_dir, futures))
+
+        text_parts = [
+            f"--- Page {page} ---\n{results[page].result()}"
+            for page in range(1, page_count + 1)
+        ]
 
     return "\n\n".join(text_parts) if text_parts else "[No text extracted from PDF]"
 
 
+def finish_batch(batch_dir, futures):
+    for future in futures:
+        future.result()
+    shutil.rmtree(batch_dir, ignore_errors=True)
+
+
 @app.route('/ocr', methods=['POST'])
 def process_ocr():
-    """Receive a file and return extracted text."""
-    if 'file' not in request.files:
+    """
+    Receive a file (multipart field `file`) or the name of a stored original
+    on the shared volume (field `document`) and return extracted text.
+    Stage timings go back in a Server-Timing header (see timing.py).
+    """
+    timings = Timings('ocr')
+    lang = request.form.get('lang') or DEFAULT_LANG
+    if not LANG_PATTERN.match(lang):
+        return jsonify({'error': f'Invalid language: {lang}'}), 400
+
+    if 'file' in request.files:
+        filename = request.files['file'].filename
+    elif request.form.get('document'):
+        filename = request.form['document']
+        if not SHARED_DIR:
+            return jsonify({'error': 'Shared uploads are not enabled'}), 400
+    else:
         return jsonify({'error': 'No file provided'}), 400
 
-    file = request.files['file']
-    if file.filename == '':
+    if filename == '':
         return jsonify({'error': 'Empty filename'}), 400
 
-    if not allowed_file(file.filename):
-        return jsonify({'error': f'Unsupported file type: {file.filename}'}), 400
+    if not allowed_file(filename):
+        return jsonify({'error': f'Unsupported file type: {filename}'}), 400
 
-    # Save to temp file
-    ext = file.filename.rsplit('.', 1)[1].lower()
-    with tempfile.NamedTemporaryFile(suffix=f'.{ext}', delete=False) as tmp:
-        file.save(tmp.name)
-        tmp_path = tmp.name
+    ext = filename.rsplit('.', 1)[1].lower()
+    if 'file' in request.files:
+        # Save to temp file
+        with tempfile.NamedTemporaryFile(suffix=f'.{ext}', delete=False) as tmp:
+            request.files['file'].save(tmp.name)
+            src_path = tmp.name
+        owned = True
+        # Includes parsing the form, which the first request.form access does
+        timings.add('receive', time.monotonic() - timings.started)
+    else:
+        src_path = shared_file(filename)
+        if src_path is None:
+            return jsonify({'error': f'Document not found: {filename}'}), 404
+        owned = False
 
     try:
-        if ext == 'pdf':
-            text = ocr_pdf(tmp_path)
-        else:
-            text = ocr_image(tmp_path)
+        with timings.stage('cache'):
+            key = content_key(src_path, cache_options(ext, lang))
+            text = ocr_cache.get(key)
+        cached = text is not None
+
+        queue_wait = 0.0
+
+        if not cached:
+            try:
+                queue_wait = admission.acquire()
+            except Overloaded as e:
+                response = jsonify({
+                    'error': str(e),
+                    'overloaded': True,
+                    'retryAfter': e.retry_after,
+                    'queue': admission.stats()
+                })
+                response.status_code = 503
+                response.headers['Retry-After'] = str(e.retry_after)
+                response.headers['Server-Timing'] = timings.header()
+                return response
+            timings.add('queue', queue_wait)
+
+            started = time.monotonic()
+            try:
+                if ext == 'pdf':
+                    text = ocr_pdf(src_path, lang, timings)
+                else:
+                    text = page_pool.submit(ocr_image_file, src_path, lang, timings).result()
+            finally:
+                admission.release(time.monotonic() - started)
+            if not has_errors(text):
+                ocr_cache.put(key, text)
 
-        return jsonify({
+        response = jsonify({
             'text': text,
-            'filename': file.filename,
+            'filename': filename,
             'characters': len(text),
+            'cached': cached,
             'success': True
         })
+        response.headers['X-OCR-Cache'] = 'hit' if cached else 'miss'
+        response.headers['X-OCR-Queue-Wait-Ms'] = str(round(queue_wait * 1000))
+        response.headers['Server-Timing'] = timings.header()
+        return response
     except Exception as e:
         return jsonify({'error': str(e)}), 500
     finally:
-        os.unlink(tmp_path)
+        if owned:
+            os.unlink(src_path)
 
 
 @app.route('/health', methods=['GET'])
@@ -109,7 +405,13 @@ def health():
 
     return jsonify({
         'status': 'ok',
-        'tesseract': tess_version
+        'tesseract': tess_version,
+        'pageWorkers': PAGE_WORKERS,
+        'admission': admission.stats(),
+        'sharedUploads': bool(SHARED_DIR),
+        'engine': 'tesserocr' if use_engines else 'cli',
+        'engines': engines.stats(),
+        'cache': ocr_cache.stats()
     })
 
 
@@ -0,0 +1,126 @@
+"""
+Pool of warm, in-process Tesseract engines (tesserocr).
+
+Starting the tesseract CLI for every image costs a process launch plus a
+reload of the LSTM model for each language. Here each engine is initialised
+once and reused across requests and PDF pages. Engines are kept per language
+string ("eng", "eng+deu", ...), at most `size` per language, created lazily
+and handed out most-recently-used first so warm ones are preferred. An engine
+is used by one thread at a time; tesserocr releases the GIL while it
+recognises, so engines on different threads run in parallel.
+
+If tesserocr is not installed, `available` is False and callers fall back to
+the tesseract CLI.
+"""
+
+import queue
+import threading
+from contextlib import contextmanager
+
+try:
+    from tesserocr import PyTessBaseAPI
+except ImportError:   # pragma: no cover - depends on the image
+    PyTessBaseAPI = None
+
+
+class EngineError(Exception):
+    """The engine could not process the image; the caller may fall back."""
+
+
+class EnginePool:
+    def __init__(self, size, psm=3, oem=3):
+        self.size = size
+        self.psm = psm
+        self.oem = oem
+        self.lock = threading.Lock()
+        self.idle = {}       # lang -> LifoQueue of idle engines
+        self.created = {}    # lang -> engines alive (idle or in use)
+        self.recognitions = 0
+        self.failures = 0
+
+    @property
+    def available(self):
+        return PyTessBaseAPI is not None
+
+    def recognise(self, image_path, lang, timeout_s):
+        """
+        Text of one image. Raises TimeoutError if recognition exceeds
+        timeout_s, EngineError if the engine cannot handle the image.
+        """
+        with self._engine(lang) as api:
+            try:
+                api.SetImageFile(image_path)
+                if not api.Recognize(timeout=int(timeout_s * 1000)):
+                    raise TimeoutError(f"recognition exceeded {timeout_s}s")
+                text = api.GetUTF8Text()
+            except RuntimeError as e:
+                raise EngineError(str(e)) from e
+            finally:
+                api.Clear()
+        with self.lock:
+            self.recognitions += 1
+        return text
+
+    def stats(self):
+        with self.lock:
+            return {
+                'available': self.available,
+                'maxPerLanguage': self.size,
+                'engines': dict(self.created),
+                'idle': {lang: q.qsize() for lang, q in self.idle.items()},
+                'recognitions': self.recognitions,
+                'failures': self.failures,
+            }
+
+    # ─── Internal Helpers ───
+
+    @contextmanager
+    def _engine(self, lang):
+        api = self._checkout(lang)
+        healthy = False
+        try:
+            yield api
+            healthy = True
+        except (TimeoutError, EngineError):
+            healthy = True     # the engine itself is fine; only this image failed
+            raise
+        finally:
+            if healthy:
+                self.idle[lang].put(api)
+            else:
+                self._discard(lang, api)
+
+    def _checkout(self, lang):
+        while True:
+            with self.lock:
+                idle = self.idle.setdefault(lang, queue.LifoQueue())
+                try:
+                    return idle.get_nowait()
+                except queue.Empty:
+                    pass
+                if self.created.get(lang, 0) < self.size:
+                    self.created[lang] = self.created.get(lang, 0) + 1
+                    break
+            # All engines for this language are busy: wait for one. The
+            # timeout re-checks capacity in case a broken engine was discarded.
+            try:
+                return idle.get(timeout=1.0)
+            except queue.Empty:
+                continue
+
+        try:
+            return PyTessBaseAPI(lang=lang, psm=self.psm, oem=self.oem)
+        except Exception as e:
+            with self.lock:
+                self.created[lang] -= 1
+                self.failures += 1
+            raise EngineError(f"could not start engine for '{lang}': {e}") from e
+
+    def _discard(self, lang, api):
+        with self.lock:
+            self.created[lang] -= 1
+            self.failures += 1
+        try:
+            api.End()
+        except Exception:
+            pass
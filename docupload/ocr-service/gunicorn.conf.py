@@ -0,0 +1,38 @@
+# gunicorn settings for the OCR service, sized from the CPUs (see admission.py).
+#
+# Requests run on threads: every process gets enough of them for its OCR
+# slots, its admission queue and a few spare ones, so requests beyond the
+# queue reach the app and are refused with 503 instead of piling up in the
+# listen backlog, and /health is answered even under full load.
+#
+# Request threads never run Tesseract themselves: images and PDF pages are
+# recognised on the app's page pool (OCR_PAGE_WORKERS), so the thread count
+# does not multiply concurrent OCR beyond the CPU budget.
+
+import os
+import sys
+
+sys.path.insert(0, os.path.dirname(os.path.abspath(__file__)))
+
+from admission import process_count, serving_limits  # noqa: E402
+
+max_active, max_queued, _ = serving_limits()
+
+bind = '0.0.0.0:5000'
+worker_class = 'gthread'
+workers = process_count()
+threads = max_active + max_queued + int(os.environ.get('OCR_SPARE_THREADS', 4))
+backlog = 64
+
+# A gthread worker keeps heart-beating while its threads run OCR; this only
+# catches a wedged process. Per-page budgets bound the OCR itself.
+timeout = 600
+graceful_timeout = 60
+keepalive = 5
+
+
+def when_ready(server):
+    server.log.info(
+        f"OCR service: {workers} worker(s) x {threads} threads, "
+        f"{max_active} OCR slot(s) + {max_queued} queued per worker"
+    )
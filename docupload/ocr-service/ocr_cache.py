@@ -0,0 +1,160 @@
+"""
+OCR result cache.
+
+Extracted text is stored on disk keyed by the SHA-256 of the input bytes plus
+the OCR options that affect the output, so a document that arrives again
+(same bytes, same settings) is answered without running Tesseract.
+
+Entries are plain UTF-8 files under <directory>/<key[:2]>/<key>.txt. The
+cache is bounded by total size and evicts least recently used entries;
+recency survives restarts through the files' mtimes, which are touched on
+every hit. Each gunicorn worker keeps its own view of the directory, so the
+bound is approximate when several workers share it.
+"""
+
+import hashlib
+import os
+import tempfile
+import threading
+import time
+from collections import OrderedDict
+
+CHUNK_SIZE = 1024 * 1024
+STALE_TMP_SECONDS = 3600
+
+
+def content_key(filepath, options):
+    """SHA-256 over the OCR options and the file's bytes."""
+    digest = hashlib.sha256()
+    digest.update(options.encode('utf-8'))
+    digest.update(b'\0')
+    with open(filepath, 'rb') as f:
+        for chunk in iter(lambda: f.read(CHUNK_SIZE), b''):
+            digest.update(chunk)
+    return digest.hexdigest()
+
+
+class OcrCache:
+    def __init__(self, directory, max_bytes):
+        self.directory = directory
+        self.max_bytes = max_bytes
+        self.lock = threading.Lock()
+        self.entries = OrderedDict()   # key -> size, least recently used first
+        self.total_bytes = 0
+        self.hits = 0
+        self.misses = 0
+        self.stores = 0
+        self.evictions = 0
+        if self.enabled:
+            os.makedirs(directory, exist_ok=True)
+            self._load()
+
+    @property
+    def enabled(self):
+        return self.max_bytes > 0
+
+    # ─── Lookups ───
+
+    def get(self, key):
+        """Cached text for key, or None."""
+        if not self.enabled:
+            return None
+        path = self._path(key)
+        try:
+            with open(path, 'r', encoding='utf-8') as f:
+                text = f.read()
+            os.utime(path)
+        except FileNotFoundError:
+            with self.lock:
+                self._forget(key)
+                self.misses += 1
+            return None
+
+        with self.lock:
+            if key in self.entries:
+                self.entries.move_to_end(key)
+            else:
+                self._track(key, os.path.getsize(path))
+            self.hits += 1
+        return text
+
+    def put(self, key, text):
+        """Store text for key. Best effort: a failed write is only logged."""
+        if not self.enabled:
+            return
+        data = text.encode('utf-8')
+        if len(data) > self.max_bytes:
+            return
+
+        path = self._path(key)
+        try:
+            os.makedirs(os.path.dirname(path), exist_ok=True)
+            fd, tmp = tempfile.mkstemp(dir=os.path.dirname(path), suffix='.tmp')
+            with os.fdopen(fd, 'wb') as f:
+                f.write(data)
+            os.replace(tmp, path)
+        except OSError as e:
+            print(f"[Cache] Could not store {key}: {e}", flush=True)
+            return
+
+        with self.lock:
+            self._forget(key)
+            self._track(key, len(data))
+            self.stores += 1
+            self._evict()
+
+    def stats(self):
+        with self.lock:
+            lookups = self.hits + self.misses
+            return {
+                'enabled': self.enabled,
+                'entries': len(self.entries),
+                'bytes': self.total_bytes,
+                'maxBytes': self.max_bytes,
+                'hits': self.hits,
+                'misses': self.misses,
+                'hitRatio': round(self.hits / lookups, 4) if lookups else None,
+                'stores': self.stores,
+                'evictions': self.evictions,
+            }
+
+    # ─── Internal Helpers ───
+
+    def _path(self, key):
+        return os.path.join(self.directory, key[:2], key + '.txt')
+
+    def _load(self):
+        found = []
+        for root, _, files in os.walk(self.directory):
+            for name in files:
+                path = os.path.join(root, name)
+                if name.endswith('.tmp'):
+                    # Left over from an interrupted write (recent ones may
+                    # belong to another worker)
+                    if time.time() - os.path.getmtime(path) > STALE_TMP_SECONDS:
+                        os.unlink(path)
+                elif name.endswith('.txt'):
+                    st = os.stat(path)
+                    found.append((st.st_mtime, name[:-4], st.st_size))
+        for _, key, size in sorted(found):
+            self._track(key, size)
+        self._evict()
+
+    def _track(self, key, size):
+        self.entries[key] = size
+        self.total_bytes += size
+
+    def _forget(self, key):
+        size = self.entries.pop(key, None)
+        if size is not None:
+            self.total_bytes -= size
+
+    def _evict(self):
+        while self.total_bytes > self.max_bytes and self.entries:
+            key, size = self.entries.popitem(last=False)
+            self.total_bytes -= size
+            self.evictions += 1
+            try:
+                os.unlink(self._path(key))
+            except FileNotFoundError:
+                pass
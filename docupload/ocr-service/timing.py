@@ -0,0 +1,58 @@
+"""
+Per-request stage timings, reported as a Server-Timing header.
+
+Every service on the upload path times its own stages and appends them to
+the Server-Timing header it got from the service behind it, so the gateway's
+response carries the whole breakdown (OCR service → api → gateway):
+
+  Server-Timing: ocr-cache;dur=3.1, ocr-recognise;dur=812.4, ocr-total;dur=830.0,
+                 api-receive;dur=41.7, api-ocr;dur=846.2, ..., gw-total;dur=902.5
+
+Names carry the service as a prefix and durations are in milliseconds. A
+stage timed more than once in a request (one OCR run per PDF page, on the
+page pool) reports the sum, with the count in `desc`, so it can exceed the
+request's wall time.
+"""
+
+import threading
+import time
+from contextlib import contextmanager
+
+
+class Timings:
+    """Stage durations of one request; safe to add to from several threads."""
+
+    def __init__(self, prefix):
+        self.prefix = prefix
+        self.started = time.monotonic()
+        self._stages = {}     # name -> [seconds, count], in first-timed order
+        self._lock = threading.Lock()
+
+    def add(self, name, seconds):
+        with self._lock:
+            stage = self._stages.setdefault(name, [0.0, 0])
+            stage[0] += seconds
+            stage[1] += 1
+
+    @contextmanager
+    def stage(self, name):
+        """Time the enclosed block as stage `name`."""
+        start = time.monotonic()
+        try:
+            yield
+        finally:
+            self.add(name, time.monotonic() - start)
+
+    def header(self):
+        """Server-Timing value: every stage, then `<prefix>-total` since creation."""
+        with self._lock:
+            stages = [(name, s, n) for name, (s, n) in self._stages.items()]
+        stages.append(('total', time.monotonic() - self.started, 1))
+        return ', '.join(metric(f'{self.prefix}-{name}', seconds, f'{count} runs' if count > 1 else None)
+                         for name, seconds, count in stages)
+
+
+def metric(name, seconds, desc=None):
+    """One Server-Timing metric, e.g. `ocr-raster;dur=812.4;desc="3 runs"`."""
+    value = f'{name};dur={seconds * 1000:.1f}'
+    return f'{value};desc="{desc}"' if desc else value